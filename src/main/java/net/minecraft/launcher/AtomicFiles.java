@@ -0,0 +1,107 @@
+package net.minecraft.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class AtomicFiles {
+    public static class SyncBatch {
+        private final Set<File> directories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+        public void add(final File directory) {
+            if(directory != null)
+                directories.add(directory);
+        }
+
+        public int sync() {
+            int synced = 0;
+            for(final File directory : directories) {
+                directories.remove(directory);
+                syncDirectory(directory);
+                synced++;
+            }
+            return synced;
+        }
+    }
+
+    public static void move(final File source, final File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(final AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static void replace(final File source, final File target) throws IOException {
+        replace(source, target, null);
+    }
+
+    public static void replace(final File source, final File target, final SyncBatch batch) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(source, "rw");
+        try {
+            file.getChannel().force(true);
+        }
+        finally {
+            file.close();
+        }
+
+        move(source, target);
+
+        if(batch != null)
+            batch.add(target.getAbsoluteFile().getParentFile());
+        else
+            syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    public static void syncDirectory(final File directory) {
+        if(directory == null || OperatingSystem.getCurrentPlatform() == OperatingSystem.WINDOWS)
+            return;
+        try {
+            final FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            }
+            finally {
+                channel.close();
+            }
+        }
+        catch(final IOException ignored) {
+        }
+    }
+
+    public static void writeString(final File target, final String content) throws IOException {
+        final File directory = target.getAbsoluteFile().getParentFile();
+        if(directory != null && !directory.isDirectory())
+            directory.mkdirs();
+
+        final File temp = File.createTempFile(target.getName() + ".", ".tmp", directory);
+        try {
+            final FileOutputStream outputStream = new FileOutputStream(temp);
+            try {
+                outputStream.write(content.getBytes());
+                outputStream.getChannel().force(true);
+            }
+            finally {
+                outputStream.close();
+            }
+
+            move(temp, target);
+        }
+        finally {
+            if(temp.exists())
+                temp.delete();
+        }
+
+        syncDirectory(directory);
+    }
+}
@@ -19,6 +19,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -36,6 +38,8 @@ import net.minecraft.launcher.updater.VersionList;
 import net.minecraft.launcher.updater.VersionSyncInfo;
 import net.minecraft.launcher.updater.download.DownloadJob;
 import net.minecraft.launcher.updater.download.DownloadListener;
+import net.minecraft.launcher.updater.download.DownloadPriority;
+import net.minecraft.launcher.updater.download.DownloadState;
 import net.minecraft.launcher.updater.download.Downloadable;
 import net.minecraft.launcher.versions.CompleteVersion;
 import net.minecraft.launcher.versions.ExtractRules;
@@ -45,13 +49,17 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.text.StrSubstitutor;
 
 public class GameLauncher implements JavaProcessRunnable, DownloadListener {
+    private static final int LAUNCH_JOB_WEIGHT = 4;
     private final Object lock = new Object();
     private final Launcher launcher;
     private final List<DownloadJob> jobs = new ArrayList<DownloadJob>();
+    private final AtomicBoolean progressBarUpdatePending = new AtomicBoolean();
     private CompleteVersion version;
     private LauncherVisibilityRule visibilityRule;
     private boolean isWorking;
     private File nativeDir;
+    private volatile float progressBarValue;
+    private volatile boolean progressBarVisible;
 
     public GameLauncher(final Launcher launcher) {
         this.launcher = launcher;
@@ -114,6 +122,12 @@ public class GameLauncher implements JavaProcessRunnable, DownloadListener {
         return split;
     }
 
+    public File getNativeDir() {
+        synchronized(lock) {
+            return nativeDir;
+        }
+    }
+
     protected float getProgress() {
         synchronized(lock) {
             float max = 0.0F;
@@ -142,6 +156,16 @@ public class GameLauncher implements JavaProcessRunnable, DownloadListener {
         return false;
     }
 
+    private boolean hasRemainingLaunchJobs() {
+        synchronized(lock) {
+            for(final DownloadJob job : jobs)
+                if(job.getPriority() != DownloadPriority.BACKGROUND && !job.isComplete())
+                    return true;
+        }
+
+        return false;
+    }
+
     public boolean isWorking() {
         return isWorking;
     }
@@ -261,15 +285,35 @@ public class GameLauncher implements JavaProcessRunnable, DownloadListener {
 
     public void onDownloadJobFinished(final DownloadJob job) {
         updateProgressBar();
+        try {
+            launcher.getVersionManager().getScheduler().getDiskExecutor().submit(new Runnable() {
+                public void run() {
+                    launcher.getVersionManager().saveIndexes();
+                }
+            });
+        }
+        catch(final RejectedExecutionException e) {
+            launcher.getVersionManager().saveIndexes();
+        }
+        launcher.println("Scheduler load after '" + job.getName() + "': " + launcher.getVersionManager().getScheduler());
         synchronized(lock) {
-            if(job.getFailures() > 0) {
+            if(job.getPriority() == DownloadPriority.BACKGROUND) {
+                launcher.println("Background job '" + job.getName() + "' finished with " + job.getSuccessful() + " file(s) and " + job.getFailures() + " failure(s)");
+                return;
+            }
+
+            if(job.getState() == DownloadState.CANCELLED) {
+                launcher.println("Job '" + job.getName() + "' was cancelled after " + job.getSuccessful() + " file(s)");
+                setWorking(false);
+            }
+            else if(job.getFailures() > 0) {
                 launcher.println("Job '" + job.getName() + "' finished with " + job.getFailures() + " failure(s)!");
                 setWorking(false);
             }
             else {
                 launcher.println("Job '" + job.getName() + "' finished successfully");
 
-                if(isWorking() && !hasRemainingJobs())
+                if(isWorking() && !hasRemainingLaunchJobs())
                     try {
                         launchGame();
                     }
@@ -413,7 +457,7 @@ public class GameLauncher implements JavaProcessRunnable, DownloadListener {
             if(syncInfo.getRemoteVersion() != null && syncInfo.getLatestSource() != VersionSyncInfo.VersionSource.REMOTE && !version.isSynced()) {
                 try {
                     final CompleteVersion remoteVersion = launcher.getVersionManager().getRemoteVersionList().getCompleteVersion(syncInfo.getRemoteVersion());
-                    launcher.getVersionManager().getLocalVersionList().removeVersion(version);
+                    launcher.getVersionManager().getLocalVersionList().removeVersion(version.getId());
                     launcher.getVersionManager().getLocalVersionList().addVersion(remoteVersion);
                     ((LocalVersionList) launcher.getVersionManager().getLocalVersionList()).saveVersion(remoteVersion);
                     version = remoteVersion;
@@ -455,9 +499,11 @@ public class GameLauncher implements JavaProcessRunnable, DownloadListener {
                 }
             try {
                 final DownloadJob job = new DownloadJob("Version & Libraries", false, this);
+                job.setWeight(LAUNCH_JOB_WEIGHT);
+                job.setPriority(DownloadPriority.CRITICAL);
                 addJob(job);
                 launcher.getVersionManager().downloadVersion(syncInfo, job);
-                job.startDownloading(launcher.getVersionManager().getExecutorService());
+                job.startDownloading(launcher.getVersionManager().getScheduler().getNetworkExecutor());
             }
             catch(final IOException e) {
                 Launcher.getInstance().println("Couldn't get version info for " + syncInfo.getLatestVersion(), e);
@@ -541,13 +587,16 @@ public class GameLauncher implements JavaProcessRunnable, DownloadListener {
     }
 
     protected void updateProgressBar() {
-        final float progress = getProgress();
-        final boolean hasTasks = hasRemainingJobs();
+        progressBarValue = getProgress();
+        progressBarVisible = hasRemainingJobs();
 
+        if(!progressBarUpdatePending.compareAndSet(false, true))
+            return;
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                launcher.getLauncherPanel().getProgressBar().setVisible(hasTasks);
-                launcher.getLauncherPanel().getProgressBar().setValue((int) (progress * 100.0F));
+                progressBarUpdatePending.set(false);
+                launcher.getLauncherPanel().getProgressBar().setVisible(progressBarVisible);
+                launcher.getLauncherPanel().getProgressBar().setValue((int) (progressBarValue * 100.0F));
             }
         });
     }
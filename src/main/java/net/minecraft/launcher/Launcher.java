@@ -35,14 +35,18 @@ import net.minecraft.launcher.profile.Profile;
 import net.minecraft.launcher.profile.ProfileManager;
 import net.minecraft.launcher.ui.LauncherPanel;
 import net.minecraft.launcher.ui.popups.login.LogInPopup;
+import net.minecraft.launcher.updater.HttpCache;
 import net.minecraft.launcher.updater.LocalVersionList;
 import net.minecraft.launcher.updater.RemoteVersionList;
 import net.minecraft.launcher.updater.VersionManager;
+import net.minecraft.launcher.updater.download.BandwidthLimiter;
 import net.minecraft.launcher.updater.download.DownloadJob;
+import net.minecraft.launcher.updater.download.DownloadPriority;
 
 public class Launcher {
     private static Launcher instance;
     private static final List<String> delayedSysout = new ArrayList<String>();
+    private static final long RESOURCE_BYTES_PER_SECOND = Long.getLong("minecraft.download.resourceBytesPerSecond", BandwidthLimiter.UNLIMITED).longValue();
 
     public static Launcher getInstance() {
         return instance;
@@ -112,7 +116,7 @@ public class Launcher {
         this.frame = frame;
         gameLauncher = new GameLauncher(this);
         profileManager = new ProfileManager(this);
-        versionManager = new VersionManager(new LocalVersionList(workingDirectory), new RemoteVersionList(proxy));
+        versionManager = new VersionManager(new LocalVersionList(workingDirectory), new RemoteVersionList(proxy, new HttpCache(new File(workingDirectory, "cache/http"))));
         launcherPanel = new LauncherPanel(this);
 
         initializeFrame();
@@ -147,12 +151,13 @@ public class Launcher {
 
     private void downloadResources() {
         final DownloadJob job = new DownloadJob("Resources", true, gameLauncher);
+        job.getBandwidthLimiter().setBytesPerSecond(RESOURCE_BYTES_PER_SECOND);
+        job.setPriority(DownloadPriority.BACKGROUND);
         gameLauncher.addJob(job);
-        versionManager.getExecutorService().submit(new Runnable() {
+        versionManager.getScheduler().getNetworkExecutor().submit(new Runnable() {
             public void run() {
                 try {
                     versionManager.downloadResources(job);
-                    job.startDownloading(versionManager.getExecutorService());
                 }
                 catch(final IOException e) {
                     Launcher.getInstance().println("Unexpected exception queueing resource downloads", e);
@@ -262,7 +267,8 @@ public class Launcher {
             public void windowClosing(final WindowEvent e) {
                 frame.setVisible(false);
                 frame.dispose();
-                versionManager.getExecutorService().shutdown();
+                DownloadJob.cancelAll();
+                versionManager.getScheduler().shutdown();
             }
         });
         try {
@@ -317,7 +323,7 @@ public class Launcher {
     }
 
     public void refreshVersionsAndProfiles() {
-        versionManager.getExecutorService().submit(new Runnable() {
+        versionManager.getScheduler().getControlExecutor().submit(new Runnable() {
             public void run() {
                 try {
                     versionManager.refreshVersions();
@@ -15,6 +15,7 @@ import java.util.UUID;
 
 import javax.swing.SwingUtilities;
 
+import net.minecraft.launcher.AtomicFiles;
 import net.minecraft.launcher.Launcher;
 import net.minecraft.launcher.LauncherConstants;
 import net.minecraft.launcher.authentication.AuthenticationDatabase;
@@ -134,7 +135,7 @@ public class ProfileManager {
         rawProfileList.clientToken = launcher.getClientToken();
         rawProfileList.authenticationDatabase = authDatabase;
 
-        FileUtils.writeStringToFile(profileFile, gson.toJson(rawProfileList));
+        AtomicFiles.writeString(profileFile, gson.toJson(rawProfileList));
     }
 
     public void setSelectedProfile(final String selectedProfile) {
@@ -6,7 +6,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import javax.swing.JButton;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 
 import net.minecraft.launcher.Launcher;
 import net.minecraft.launcher.authentication.AuthenticationService;
@@ -19,6 +21,7 @@ import net.minecraft.launcher.updater.VersionManager;
 public class PlayButtonPanel extends JPanel implements RefreshedProfilesListener, RefreshedVersionsListener {
     private final Launcher launcher;
     private final JButton playButton = new JButton("Play");
+    private final JMenuItem forceUpdateItem = new JMenuItem("Force update & play");
 
     public PlayButtonPanel(final Launcher launcher) {
         this.launcher = launcher;
@@ -29,11 +32,13 @@ public class PlayButtonPanel extends JPanel implements RefreshedProfilesListener
 
         playButton.addActionListener(new ActionListener() {
             public void actionPerformed(final ActionEvent e) {
-                getLauncher().getVersionManager().getExecutorService().submit(new Runnable() {
-                    public void run() {
-                        getLauncher().getGameLauncher().playGame();
-                    }
-                });
+                play(false);
+            }
+        });
+        forceUpdateItem.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                if(playButton.isEnabled())
+                    play(true);
             }
         });
     }
@@ -61,6 +66,7 @@ public class PlayButtonPanel extends JPanel implements RefreshedProfilesListener
 
         if(launcher.getGameLauncher().isWorking())
             playButton.setEnabled(false);
+        forceUpdateItem.setEnabled(playButton.isEnabled());
     }
 
     protected void createInterface() {
@@ -75,12 +81,26 @@ public class PlayButtonPanel extends JPanel implements RefreshedProfilesListener
         add(playButton, constraints);
 
         playButton.setFont(playButton.getFont().deriveFont(1, playButton.getFont().getSize() + 2));
+
+        final JPopupMenu menu = new JPopupMenu();
+        menu.add(forceUpdateItem);
+        playButton.setComponentPopupMenu(menu);
     }
 
     public Launcher getLauncher() {
         return launcher;
     }
 
+    private void play(final boolean forceUpdate) {
+        launcher.getVersionManager().getScheduler().getControlExecutor().submit(new Runnable() {
+            public void run() {
+                if(forceUpdate)
+                    launcher.getVersionManager().requestRevalidation();
+                launcher.getGameLauncher().playGame();
+            }
+        });
+    }
+
     public void onProfilesRefreshed(final ProfileManager manager) {
         checkState();
     }
@@ -61,7 +61,7 @@ public class StatusPanelForm extends SidebarGridForm {
     }
 
     public void refreshStatuses() {
-        launcher.getVersionManager().getExecutorService().submit(new Runnable() {
+        launcher.getVersionManager().getScheduler().getControlExecutor().submit(new Runnable() {
             public void run() {
                 try {
                     final TypeToken<Type> token = new TypeToken<Type>() {
@@ -39,7 +39,7 @@ public class ExistingUserListForm extends JPanel implements ActionListener {
         if(e.getSource() == playButton) {
             popup.setCanLogIn(false);
 
-            popup.getLauncher().getVersionManager().getExecutorService().execute(new Runnable() {
+            popup.getLauncher().getVersionManager().getScheduler().getControlExecutor().execute(new Runnable() {
                 public void run() {
                     final Object selected = userDropdown.getSelectedItem();
                     String uuid;
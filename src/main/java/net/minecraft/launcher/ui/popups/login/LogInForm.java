@@ -136,7 +136,7 @@ public class LogInForm extends JPanel implements ActionListener {
                 selectedProfile = authentication.getAvailableProfiles()[0];
 
             final GameProfile finalSelectedProfile = selectedProfile;
-            popup.getLauncher().getVersionManager().getExecutorService().execute(new Runnable() {
+            popup.getLauncher().getVersionManager().getScheduler().getControlExecutor().execute(new Runnable() {
                 public void run() {
                     try {
                         authentication.selectGameProfile(finalSelectedProfile);
@@ -165,7 +165,7 @@ public class LogInForm extends JPanel implements ActionListener {
 
             passwordField.setText("");
 
-            popup.getLauncher().getVersionManager().getExecutorService().execute(new Runnable() {
+            popup.getLauncher().getVersionManager().getScheduler().getControlExecutor().execute(new Runnable() {
                 public void run() {
                     try {
                         authentication.logIn();
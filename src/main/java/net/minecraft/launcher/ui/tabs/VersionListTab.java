@@ -1,12 +1,17 @@
 package net.minecraft.launcher.ui.tabs;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 import net.minecraft.launcher.Launcher;
@@ -20,6 +25,7 @@ import net.minecraft.launcher.versions.Version;
 public class VersionListTab extends JScrollPane implements RefreshedVersionsListener {
     private class VersionTableModel extends AbstractTableModel {
         private final List<Version> versions = new ArrayList<Version>();
+        private final Map<String, Object> libraryCounts = new HashMap<String, Object>();
 
         private VersionTableModel() {
         }
@@ -32,6 +38,52 @@ public class VersionListTab extends JScrollPane implements RefreshedVersionsList
             return String.class;
         }
 
+        private Object getLibraryCount(final Version version) {
+            if(version instanceof CompleteVersion)
+                return getLibraryCount((CompleteVersion) version);
+            if(libraryCounts.containsKey(version.getId()))
+                return libraryCounts.get(version.getId());
+
+            libraryCounts.put(version.getId(), "...");
+            try {
+                launcher.getVersionManager().getScheduler().getControlExecutor().execute(new Runnable() {
+                    public void run() {
+                        Object count;
+                        try {
+                            count = getLibraryCount(launcher.getVersionManager().getLocalVersionList().getCompleteVersion(version));
+                        }
+                        catch(final IOException e) {
+                            Launcher.getInstance().println("Couldn't load " + version.getId() + " to count its libraries", e);
+                            count = "?";
+                        }
+
+                        final Object result = count;
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                final int row = versions.indexOf(version);
+                                if(row < 0)
+                                    return;
+                                libraryCounts.put(version.getId(), result);
+                                fireTableRowsUpdated(row, row);
+                            }
+                        });
+                    }
+                });
+            }
+            catch(final RejectedExecutionException e) {
+                libraryCounts.put(version.getId(), "?");
+            }
+            return libraryCounts.get(version.getId());
+        }
+
+        private Object getLibraryCount(final CompleteVersion complete) {
+            final int total = complete.getLibraries().size();
+            final int relevant = complete.getRelevantLibraries().size();
+            if(total == relevant)
+                return Integer.valueOf(total);
+            return String.format("%d (%d relevant to %s)", new Object[] { Integer.valueOf(total), Integer.valueOf(relevant), OperatingSystem.getCurrentPlatform().getName() });
+        }
+
         public int getColumnCount() {
             return 6;
         }
@@ -68,16 +120,7 @@ public class VersionListTab extends JScrollPane implements RefreshedVersionsList
             case 3:
                 return version.getUpdatedTime();
             case 4:
-                if(version instanceof CompleteVersion) {
-                    final CompleteVersion complete = (CompleteVersion) version;
-                    final int total = complete.getLibraries().size();
-                    final int relevant = complete.getRelevantLibraries().size();
-                    if(total == relevant)
-                        return Integer.valueOf(total);
-                    return String.format("%d (%d relevant to %s)", new Object[] { Integer.valueOf(total), Integer.valueOf(relevant), OperatingSystem.getCurrentPlatform().getName() });
-                }
-
-                return "?";
+                return getLibraryCount(version);
             case 5:
                 final VersionSyncInfo syncInfo = launcher.getVersionManager().getVersionSyncInfo(version);
                 if(syncInfo.isOnRemote()) {
@@ -99,6 +142,7 @@ public class VersionListTab extends JScrollPane implements RefreshedVersionsList
         public void setVersions(final Collection<Version> versions) {
             this.versions.clear();
             this.versions.addAll(versions);
+            libraryCounts.clear();
             fireTableDataChanged();
         }
     }
@@ -7,13 +7,15 @@ import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.minecraft.launcher.Launcher;
 
 public class ExceptionalThreadPoolExecutor extends ThreadPoolExecutor {
-    public class ExceptionalFutureTask<T> extends FutureTask<T> {
+    public static class ExceptionalFutureTask<T> extends FutureTask<T> {
 
         public ExceptionalFutureTask(final Callable<T> callable) {
             super(callable);
@@ -34,10 +36,40 @@ public class ExceptionalThreadPoolExecutor extends ThreadPoolExecutor {
         }
     }
 
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final boolean daemon;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public NamedThreadFactory(final String name, final boolean daemon) {
+            this.name = name;
+            this.daemon = daemon;
+        }
+
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        }
+    }
+
     public ExceptionalThreadPoolExecutor(final int threadCount) {
         super(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
     }
 
+    public ExceptionalThreadPoolExecutor(final int threadCount, final String name) {
+        this(threadCount, name, true);
+    }
+
+    public ExceptionalThreadPoolExecutor(final int threadCount, final String name, final boolean daemon) {
+        this(threadCount, new NamedThreadFactory(name, daemon));
+    }
+
+    public ExceptionalThreadPoolExecutor(final int threadCount, final ThreadFactory threadFactory) {
+        super(threadCount, threadCount, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+        allowCoreThreadTimeOut(true);
+    }
+
     @Override
     protected void afterExecute(final Runnable r, Throwable t) {
         super.afterExecute(r, t);
@@ -3,6 +3,8 @@ package net.minecraft.launcher.updater;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 import org.apache.commons.io.IOUtils;
 
@@ -12,5 +14,9 @@ public abstract class FileBasedVersionList extends VersionList {
         return IOUtils.toString(getFileInputStream(path)).replaceAll("\\r\\n", "\r").replaceAll("\\r", "\n");
     }
 
+    protected Reader getContentReader(final String path) throws IOException {
+        return new InputStreamReader(getFileInputStream(path));
+    }
+
     protected abstract InputStream getFileInputStream(String paramString) throws FileNotFoundException;
 }
\ No newline at end of file
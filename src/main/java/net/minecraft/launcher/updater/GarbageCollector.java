@@ -0,0 +1,440 @@
+package net.minecraft.launcher.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import net.minecraft.launcher.GameLauncher;
+import net.minecraft.launcher.Launcher;
+import net.minecraft.launcher.OperatingSystem;
+import net.minecraft.launcher.updater.download.ObjectStore;
+import net.minecraft.launcher.updater.download.VerifiedFileIndex;
+import net.minecraft.launcher.versions.CompleteVersion;
+import net.minecraft.launcher.versions.Version;
+
+import org.apache.commons.io.FileUtils;
+
+public class GarbageCollector implements Runnable {
+    public static enum Area {
+        LIBRARIES, NATIVES, ASSETS, OBJECTS
+    }
+
+    public static class Report {
+        private final boolean dryRun;
+        private final List<File> unreachable = new ArrayList<File>();
+        private long bytes;
+        private int scanned;
+        private int failures;
+
+        public Report(final boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public int getScanned() {
+            return scanned;
+        }
+
+        public List<File> getUnreachable() {
+            return Collections.unmodifiableList(unreachable);
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        @Override
+        public String toString() {
+            return (dryRun ? "would remove " : "removed ") + unreachable.size() + " unreachable file(s) totalling " + bytes / 1024L + " KiB after scanning " + scanned + " entries" + (failures > 0 ? " (" + failures + " couldn't be deleted)" : "");
+        }
+    }
+
+    public static final boolean DISABLED = Boolean.getBoolean("minecraft.gc.disabled");
+    public static final boolean DRY_RUN = !Boolean.getBoolean("minecraft.gc.delete");
+    public static final int OPERATIONS_PER_SECOND = Integer.getInteger("minecraft.gc.operationsPerSecond", 200).intValue();
+    public static final long GRACE_MILLIS = Long.getLong("minecraft.gc.graceHours", 24L).longValue() * 3600000L;
+    private static final int BATCH_SIZE = 32;
+    private static final long BUSY_WAIT_MILLIS = 1000L;
+    private static final Pattern NATIVES_DIRECTORY = Pattern.compile(".+-natives-\\d+");
+
+    private final VersionManager versionManager;
+    private final File baseDirectory;
+    private final Set<Area> collected = EnumSet.noneOf(Area.class);
+    private final ArrayDeque<Area> pendingAreas = new ArrayDeque<Area>();
+    private final ArrayDeque<File> directories = new ArrayDeque<File>();
+    private final ArrayDeque<File> entries = new ArrayDeque<File>();
+    private final ArrayDeque<String> references = new ArrayDeque<String>();
+    private final List<File> visitedDirectories = new ArrayList<File>();
+    private Area area;
+    private File areaRoot;
+    private Set<String> live;
+    private Report report;
+    private volatile Report lastReport;
+    private boolean running;
+    private long nextSlot;
+
+    public GarbageCollector(final VersionManager versionManager, final File baseDirectory) {
+        this.versionManager = versionManager;
+        this.baseDirectory = baseDirectory;
+    }
+
+    private boolean advance() {
+        if(!references.isEmpty()) {
+            final File file = new File(references.poll());
+            if(!file.exists())
+                versionManager.getObjectStore().release(file);
+            return true;
+        }
+        if(!entries.isEmpty()) {
+            visit(entries.poll());
+            return true;
+        }
+        if(!directories.isEmpty()) {
+            list(directories.poll());
+            return true;
+        }
+
+        if(area != null)
+            finishArea();
+        return startArea();
+    }
+
+    private void collect(final File file) {
+        final long size = file.isDirectory() ? FileUtils.sizeOfDirectory(file) : file.length();
+
+        if(report.dryRun) {
+            Launcher.getInstance().println("Garbage collection would remove " + file + " (" + size / 1024L + " KiB)");
+            report.unreachable.add(file);
+            report.bytes += size;
+            return;
+        }
+
+        if(!FileUtils.deleteQuietly(file)) {
+            report.failures++;
+            return;
+        }
+        report.unreachable.add(file);
+        report.bytes += size;
+
+        final VerifiedFileIndex fileIndex = versionManager.getFileIndex();
+        if(fileIndex != null)
+            fileIndex.invalidate(file);
+        final ObjectStore objectStore = versionManager.getObjectStore();
+        if(objectStore != null)
+            objectStore.release(file);
+    }
+
+    private Set<String> computeLiveSet(final Set<String> assetKeys) throws IOException {
+        final VersionList localVersionList = versionManager.getLocalVersionList();
+        final Set<String> result = new HashSet<String>();
+        final Set<String> loaded = new HashSet<String>();
+
+        for(final Version version : localVersionList.getVersions()) {
+            final CompleteVersion complete = localVersionList.getCompleteVersion(version);
+            loaded.add(complete.getId());
+
+            for(final OperatingSystem os : OperatingSystem.values()) {
+                for(final String file : complete.getRequiredFiles(os))
+                    result.add(new File(baseDirectory, file).getAbsolutePath());
+                for(final String file : complete.getExtractFiles(os))
+                    result.add(new File(baseDirectory, file).getAbsolutePath());
+                for(final File file : complete.getClassPath(os, baseDirectory))
+                    result.add(file.getAbsolutePath());
+            }
+        }
+
+        final File[] versionDirectories = new File(baseDirectory, "versions").listFiles();
+        if(versionDirectories != null)
+            for(final File directory : versionDirectories)
+                if(new File(directory, directory.getName() + ".json").isFile() && !loaded.contains(directory.getName()))
+                    throw new IOException("Version " + directory.getName() + " is installed but couldn't be loaded");
+
+        if(assetKeys != null)
+            for(final String key : assetKeys)
+                result.add(new File(baseDirectory, "assets/" + key).getAbsolutePath());
+
+        return result;
+    }
+
+    private void finish() {
+        final Report finished = report;
+        versionManager.saveIndexes();
+        Launcher.getInstance().println("Garbage collection " + finished);
+
+        synchronized(this) {
+            running = false;
+            report = null;
+            lastReport = finished;
+            if(!pendingAreas.isEmpty())
+                submit(finished.dryRun);
+        }
+    }
+
+    private void finishArea() {
+        if(area != Area.NATIVES)
+            for(int i = visitedDirectories.size() - 1; i >= 0; i--) {
+                final File directory = visitedDirectories.get(i);
+                final String[] children = directory.list();
+                if(!report.dryRun && !directory.equals(areaRoot) && children != null && children.length == 0)
+                    directory.delete();
+            }
+        visitedDirectories.clear();
+
+        synchronized(this) {
+            collected.add(area);
+        }
+        area = null;
+        areaRoot = null;
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    private int getLinkCount(final File file) {
+        try {
+            return ((Number) Files.getAttribute(file.toPath(), "unix:nlink")).intValue();
+        }
+        catch(final IOException e) {
+            return -1;
+        }
+        catch(final UnsupportedOperationException e) {
+            return -1;
+        }
+        catch(final IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private boolean isBusy() {
+        final GameLauncher gameLauncher = Launcher.getInstance().getGameLauncher();
+        return versionManager.isRefreshing() || gameLauncher != null && gameLauncher.hasRemainingJobs();
+    }
+
+    private boolean isCollectable(final File file) {
+        return isRecorded(file) && !live.contains(file.getAbsolutePath()) && System.currentTimeMillis() - file.lastModified() > GRACE_MILLIS;
+    }
+
+    private boolean isProtectedNatives(final File directory) {
+        final GameLauncher gameLauncher = Launcher.getInstance().getGameLauncher();
+        final File active = gameLauncher == null ? null : gameLauncher.getNativeDir();
+        return active != null && active.getAbsoluteFile().equals(directory.getAbsoluteFile());
+    }
+
+    private boolean isRecorded(final File file) {
+        final VerifiedFileIndex fileIndex = versionManager.getFileIndex();
+        if(fileIndex != null && fileIndex.contains(file))
+            return true;
+        final ObjectStore objectStore = versionManager.getObjectStore();
+        return objectStore != null && objectStore.isReferenced(file);
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void list(final File directory) {
+        visitedDirectories.add(directory);
+
+        final File[] children = directory.listFiles();
+        if(children == null)
+            return;
+
+        for(final File child : children)
+            if(area == Area.NATIVES) {
+                if(!child.isDirectory())
+                    continue;
+                if(NATIVES_DIRECTORY.matcher(child.getName()).matches())
+                    entries.add(child);
+                else if(directory.equals(areaRoot))
+                    directories.add(child);
+            }
+            else if(child.isDirectory())
+                directories.add(child);
+            else
+                entries.add(child);
+    }
+
+    private void pace(final int operations) throws InterruptedException {
+        if(OPERATIONS_PER_SECOND <= 0 || operations <= 0)
+            return;
+
+        final long now = System.nanoTime();
+        nextSlot = Math.max(nextSlot, now) + operations * 1000000000L / OPERATIONS_PER_SECOND;
+        if(nextSlot > now)
+            TimeUnit.NANOSECONDS.sleep(nextSlot - now);
+    }
+
+    private void resetWalk() {
+        directories.clear();
+        entries.clear();
+        references.clear();
+        visitedDirectories.clear();
+        live = null;
+    }
+
+    private void resubmit() {
+        try {
+            versionManager.getScheduler().getDiskExecutor().execute(this);
+        }
+        catch(final RejectedExecutionException e) {
+            synchronized(this) {
+                running = false;
+            }
+        }
+    }
+
+    public void run() {
+        try {
+            if(isBusy()) {
+                live = null;
+                Thread.sleep(BUSY_WAIT_MILLIS);
+                resubmit();
+                return;
+            }
+
+            if(live == null)
+                try {
+                    live = computeLiveSet(versionManager.getAssetKeys());
+                }
+                catch(final IOException e) {
+                    Launcher.getInstance().println("Skipping garbage collection; couldn't compute the set of files in use", e);
+                    synchronized(this) {
+                        pendingAreas.clear();
+                    }
+                    area = null;
+                    resetWalk();
+                    finish();
+                    return;
+                }
+
+            int operations = 0;
+            boolean more = true;
+            while(operations < BATCH_SIZE && (more = advance()))
+                operations++;
+            report.scanned += operations;
+
+            pace(operations);
+            if(more)
+                resubmit();
+            else {
+                live = null;
+                finish();
+            }
+        }
+        catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized(this) {
+                running = false;
+            }
+        }
+        catch(final RuntimeException e) {
+            Launcher.getInstance().println("Garbage collection failed" + (area == null ? "" : " in " + area.name().toLowerCase()), e);
+            area = null;
+            areaRoot = null;
+            resetWalk();
+            synchronized(this) {
+                running = false;
+                report = null;
+            }
+        }
+    }
+
+    public void schedule() {
+        schedule(DRY_RUN);
+    }
+
+    public synchronized void schedule(final boolean dryRun) {
+        if(DISABLED)
+            return;
+
+        for(final Area candidate : Area.values())
+            if(!collected.contains(candidate) && !pendingAreas.contains(candidate) && candidate != area)
+                pendingAreas.add(candidate);
+
+        if(!running && !pendingAreas.isEmpty())
+            submit(dryRun);
+    }
+
+    private boolean startArea() {
+        final Area next;
+        synchronized(this) {
+            next = pendingAreas.poll();
+        }
+        if(next == null)
+            return false;
+
+        area = next;
+        switch(next) {
+            case LIBRARIES:
+                areaRoot = new File(baseDirectory, "libraries");
+                break;
+            case NATIVES:
+                areaRoot = new File(baseDirectory, "versions");
+                break;
+            case ASSETS:
+                if(versionManager.getAssetKeys() == null) {
+                    area = null;
+                    return true;
+                }
+                areaRoot = new File(baseDirectory, "assets");
+                break;
+            case OBJECTS:
+                final ObjectStore objectStore = versionManager.getObjectStore();
+                if(objectStore == null)
+                    return true;
+                areaRoot = objectStore.getRoot();
+                for(final Map.Entry<String, Set<String>> entry : objectStore.getReferences().entrySet())
+                    references.addAll(entry.getValue());
+                break;
+        }
+
+        if(areaRoot.isDirectory())
+            directories.add(areaRoot);
+        return true;
+    }
+
+    private void submit(final boolean dryRun) {
+        running = true;
+        report = new Report(dryRun);
+        nextSlot = 0L;
+        resubmit();
+    }
+
+    private void visit(final File file) {
+        switch(area) {
+            case NATIVES:
+                if(!isProtectedNatives(file) && System.currentTimeMillis() - file.lastModified() > GRACE_MILLIS)
+                    collect(file);
+                break;
+            case OBJECTS:
+                if(file.getParentFile().equals(areaRoot))
+                    break;
+                if(versionManager.getObjectStore().getReferenceCount(file.getName()) == 0 && getLinkCount(file) == 1 && System.currentTimeMillis() - file.lastModified() > GRACE_MILLIS)
+                    collect(file);
+                break;
+            default:
+                if(isCollectable(file))
+                    collect(file);
+                break;
+        }
+    }
+}
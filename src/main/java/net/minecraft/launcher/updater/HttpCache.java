@@ -0,0 +1,201 @@
+package net.minecraft.launcher.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.minecraft.launcher.AtomicFiles;
+import net.minecraft.launcher.Launcher;
+import net.minecraft.launcher.updater.download.MultiDigest;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+public class HttpCache {
+    private static class Entry {
+        private String url;
+        private String etag;
+        private String lastModified;
+        private long fetched;
+        private String body;
+    }
+
+    public static final long FRESH_MILLIS = Long.getLong("minecraft.cache.freshSeconds", 60L).longValue() * 1000L;
+    public static final long STALE_MILLIS = Long.getLong("minecraft.cache.staleSeconds", 86400L).longValue() * 1000L;
+
+    private final File directory;
+    private final Gson gson = new GsonBuilder().create();
+    private final Set<String> revalidating = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile Executor executor;
+
+    public HttpCache(final File directory) {
+        this.directory = directory;
+    }
+
+    private Entry fetch(final URL url, final Proxy proxy, final Entry cached) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection(proxy);
+        connection.setConnectTimeout(15000);
+        connection.setReadTimeout(60000);
+        connection.setRequestMethod("GET");
+        connection.setUseCaches(false);
+        if(cached != null) {
+            if(cached.etag != null)
+                connection.setRequestProperty("If-None-Match", cached.etag);
+            if(cached.lastModified != null)
+                connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+        }
+
+        try {
+            if(cached != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                cached.fetched = System.currentTimeMillis();
+                save(cached);
+                return cached;
+            }
+
+            final InputStream inputStream = connection.getInputStream();
+            final Entry entry = new Entry();
+            try {
+                entry.body = IOUtils.toString(inputStream);
+            }
+            finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+            entry.url = url.toString();
+            entry.etag = connection.getHeaderField("ETag");
+            entry.lastModified = connection.getHeaderField("Last-Modified");
+            entry.fetched = System.currentTimeMillis();
+            save(entry);
+            return entry;
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    private String fetchOrCached(final URL url, final Proxy proxy, final Entry cached) throws IOException {
+        try {
+            return fetch(url, proxy, cached).body;
+        }
+        catch(final IOException e) {
+            if(cached == null)
+                throw e;
+            Launcher.getInstance().println("Couldn't reach " + url + " (" + e + "), using cached copy from " + (System.currentTimeMillis() - cached.fetched) / 60000L + " minute(s) ago");
+            return cached.body;
+        }
+    }
+
+    public String get(final URL url, final Proxy proxy, final boolean allowStale) throws IOException {
+        final Entry cached = load(url);
+        if(cached != null) {
+            final long age = System.currentTimeMillis() - cached.fetched;
+            if(age >= 0L && age < FRESH_MILLIS)
+                return cached.body;
+            if(allowStale && age >= 0L && age < STALE_MILLIS && revalidateLater(url, proxy, cached))
+                return cached.body;
+        }
+
+        return fetchOrCached(url, proxy, cached);
+    }
+
+    public String getCached(final URL url) {
+        final Entry cached = load(url);
+        return cached == null ? null : cached.body;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private File getEntryFile(final URL url) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(url.toString().getBytes("UTF-8"));
+            return new File(directory, MultiDigest.toHex(digest) + ".json");
+        }
+        catch(final NoSuchAlgorithmException e) {
+            throw new RuntimeException("Missing digest SHA-1", e);
+        }
+        catch(final IOException e) {
+            throw new RuntimeException("Missing charset UTF-8", e);
+        }
+    }
+
+    private Entry load(final URL url) {
+        final File file = getEntryFile(url);
+        if(!file.isFile())
+            return null;
+
+        try {
+            final Entry entry = gson.fromJson(FileUtils.readFileToString(file), Entry.class);
+            if(entry != null && entry.body != null && url.toString().equals(entry.url))
+                return entry;
+        }
+        catch(final IOException e) {
+            Launcher.getInstance().println("Couldn't read cached copy of " + url, e);
+        }
+        catch(final JsonParseException e) {
+            Launcher.getInstance().println("Ignoring corrupt cached copy of " + url, e);
+        }
+        return null;
+    }
+
+    public String revalidate(final URL url, final Proxy proxy) throws IOException {
+        return fetchOrCached(url, proxy, load(url));
+    }
+
+    private boolean revalidateLater(final URL url, final Proxy proxy, final Entry cached) {
+        final Executor target = executor;
+        if(target == null)
+            return false;
+        if(!revalidating.add(url.toString()))
+            return true;
+
+        try {
+            target.execute(new Runnable() {
+                public void run() {
+                    try {
+                        fetch(url, proxy, cached);
+                    }
+                    catch(final IOException e) {
+                        Launcher.getInstance().println("Couldn't revalidate cached copy of " + url + " (" + e + ")");
+                    }
+                    finally {
+                        revalidating.remove(url.toString());
+                    }
+                }
+            });
+            return true;
+        }
+        catch(final RejectedExecutionException e) {
+            revalidating.remove(url.toString());
+            return false;
+        }
+    }
+
+    private void save(final Entry entry) {
+        try {
+            AtomicFiles.writeString(getEntryFile(new URL(entry.url)), gson.toJson(entry));
+        }
+        catch(final IOException e) {
+            Launcher.getInstance().println("Couldn't cache " + entry.url, e);
+        }
+    }
+
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+}
@@ -1,24 +1,47 @@
 package net.minecraft.launcher.updater;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
+import net.minecraft.launcher.AtomicFiles;
 import net.minecraft.launcher.Launcher;
 import net.minecraft.launcher.OperatingSystem;
 import net.minecraft.launcher.versions.CompleteVersion;
+import net.minecraft.launcher.versions.PartialVersion;
 import net.minecraft.launcher.versions.ReleaseType;
 import net.minecraft.launcher.versions.Version;
 
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 public class LocalVersionList extends FileBasedVersionList {
+    public static final boolean EAGER_LOADING = Boolean.getBoolean("minecraft.versions.eager");
     private final File baseDirectory;
     private final File baseVersionsDir;
+    private final Map<String, SoftReference<CompleteVersion>> completeVersions = new ConcurrentHashMap<String, SoftReference<CompleteVersion>>();
+    private volatile Executor executor;
 
     public LocalVersionList(final File baseDirectory) {
         if(baseDirectory == null || !baseDirectory.isDirectory())
@@ -30,15 +53,74 @@ public class LocalVersionList extends FileBasedVersionList {
             baseVersionsDir.mkdirs();
     }
 
+    @Override
+    protected void clearCache() {
+        super.clearCache();
+        completeVersions.clear();
+    }
+
     public File getBaseDirectory() {
         return baseDirectory;
     }
 
+    @Override
+    public CompleteVersion getCompleteVersion(final Version version) throws IOException {
+        if(version == null || version instanceof CompleteVersion)
+            return super.getCompleteVersion(version);
+
+        final CompleteVersion loaded = getLoadedVersion(version.getId());
+        if(loaded != null)
+            return loaded;
+
+        final String path = "versions/" + version.getId() + "/" + version.getId() + ".json";
+        final CompleteVersion complete;
+        try {
+            complete = parseVersion(path);
+        }
+        catch(final JsonParseException e) {
+            throw new IOException("Couldn't load local version " + path, e);
+        }
+        if(complete == null || !version.getId().equals(complete.getId()))
+            throw new IOException("Local version " + path + " no longer contains '" + version.getId() + "'");
+
+        completeVersions.put(version.getId(), new SoftReference<CompleteVersion>(complete));
+        return complete;
+    }
+
     @Override
     protected InputStream getFileInputStream(final String path) throws FileNotFoundException {
         return new FileInputStream(new File(baseDirectory, path));
     }
 
+    public CompleteVersion getLoadedVersion(final String name) {
+        final Version version = getVersion(name);
+        if(version instanceof CompleteVersion)
+            return (CompleteVersion) version;
+
+        final SoftReference<CompleteVersion> reference = completeVersions.get(name);
+        return reference == null ? null : reference.get();
+    }
+
+    private Version getParsed(final FutureTask<Version> task) throws IOException {
+        try {
+            return task.get();
+        }
+        catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading local versions");
+        }
+        catch(final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException("Couldn't load local version", cause);
+        }
+    }
+
     @Override
     public boolean hasAllFiles(final CompleteVersion version, final OperatingSystem os) {
         final Set<String> files = version.getRequiredFiles(os);
@@ -50,6 +132,58 @@ public class LocalVersionList extends FileBasedVersionList {
         return true;
     }
 
+    private Version parseHeader(final String path) throws IOException {
+        String id = null;
+        Date time = null;
+        Date releaseTime = null;
+        ReleaseType type = null;
+
+        final JsonReader reader = new JsonReader(getContentReader(path));
+        reader.setLenient(true);
+        try {
+            reader.beginObject();
+            while(reader.hasNext() && (id == null || time == null || releaseTime == null || type == null)) {
+                final String name = reader.nextName();
+                if("id".equals(name))
+                    id = gson.fromJson(reader, String.class);
+                else if("time".equals(name))
+                    time = gson.fromJson(reader, Date.class);
+                else if("releaseTime".equals(name))
+                    releaseTime = gson.fromJson(reader, Date.class);
+                else if("type".equals(name))
+                    type = gson.fromJson(reader, ReleaseType.class);
+                else
+                    reader.skipValue();
+            }
+        }
+        catch(final EOFException e) {
+            throw new JsonSyntaxException(e);
+        }
+        catch(final MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        }
+        catch(final IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+
+        if(id == null || id.length() == 0 || time == null || releaseTime == null || type == null)
+            return parseVersion(path);
+        return new PartialVersion(id, releaseTime, time, type);
+    }
+
+    private CompleteVersion parseVersion(final String path) throws IOException {
+        final Reader reader = getContentReader(path);
+        try {
+            return gson.fromJson(reader, CompleteVersion.class);
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
     @Override
     public void refreshVersions() throws IOException {
         clearCache();
@@ -57,27 +191,49 @@ public class LocalVersionList extends FileBasedVersionList {
         final File[] files = baseVersionsDir.listFiles();
         if(files == null)
             return;
+        Arrays.sort(files);
+
+        final List<String> ids = new ArrayList<String>();
+        final List<FutureTask<Version>> tasks = new ArrayList<FutureTask<Version>>();
+        final Executor target = executor;
 
         for(final File directory : files) {
             final String id = directory.getName();
-            final File jsonFile = new File(directory, id + ".json");
-
-            if(directory.isDirectory() && jsonFile.exists())
-                try {
-                    final String path = "versions/" + id + "/" + id + ".json";
-                    final CompleteVersion version = gson.fromJson(getContent(path), CompleteVersion.class);
-
-                    if(version.getId().equals(id))
-                        addVersion(version);
-                    else if(Launcher.getInstance() != null)
-                        Launcher.getInstance().println("Ignoring: " + path + "; it contains id: '" + version.getId() + "' expected '" + id + "'");
-                }
-                catch(final RuntimeException ex) {
-                    if(Launcher.getInstance() != null)
-                        Launcher.getInstance().println("Couldn't load local version " + jsonFile.getAbsolutePath(), ex);
-                    else
-                        throw new JsonSyntaxException("Loading file: " + jsonFile.toString(), ex);
-                }
+            final String path = "versions/" + id + "/" + id + ".json";
+
+            if(directory.isDirectory() && new File(directory, id + ".json").exists()) {
+                final FutureTask<Version> task = new FutureTask<Version>(new Callable<Version>() {
+                    public Version call() throws IOException {
+                        return EAGER_LOADING ? parseVersion(path) : parseHeader(path);
+                    }
+                });
+                ids.add(id);
+                tasks.add(task);
+                if(target == null)
+                    task.run();
+                else
+                    target.execute(task);
+            }
+        }
+
+        for(int i = 0; i < tasks.size(); i++) {
+            final String id = ids.get(i);
+            final String path = "versions/" + id + "/" + id + ".json";
+            try {
+                final Version version = getParsed(tasks.get(i));
+
+                if(version.getId().equals(id))
+                    addVersion(version);
+                else if(Launcher.getInstance() != null)
+                    Launcher.getInstance().println("Ignoring: " + path + "; it contains id: '" + version.getId() + "' expected '" + id + "'");
+            }
+            catch(final RuntimeException ex) {
+                final File jsonFile = new File(baseDirectory, path);
+                if(Launcher.getInstance() != null)
+                    Launcher.getInstance().println("Couldn't load local version " + jsonFile.getAbsolutePath(), ex);
+                else
+                    throw new JsonSyntaxException("Loading file: " + jsonFile.toString(), ex);
+            }
         }
 
         for(final Version version : getVersions()) {
@@ -91,17 +247,16 @@ public class LocalVersionList extends FileBasedVersionList {
     public void saveVersion(final CompleteVersion version) throws IOException {
         final String text = serializeVersion(version);
         final File target = new File(baseVersionsDir, version.getId() + "/" + version.getId() + ".json");
-        if(target.getParentFile() != null)
-            target.getParentFile().mkdirs();
-        final PrintWriter writer = new PrintWriter(target);
-        writer.print(text);
-        writer.close();
+        AtomicFiles.writeString(target, text);
+        completeVersions.put(version.getId(), new SoftReference<CompleteVersion>(version));
     }
 
     public void saveVersionList() throws IOException {
         final String text = serializeVersionList();
-        final PrintWriter writer = new PrintWriter(new File(baseVersionsDir, "versions.json"));
-        writer.print(text);
-        writer.close();
+        AtomicFiles.writeString(new File(baseVersionsDir, "versions.json"), text);
+    }
+
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
     }
 }
\ No newline at end of file
@@ -3,28 +3,75 @@ package net.minecraft.launcher.updater;
 import java.io.IOException;
 import java.net.Proxy;
 import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import net.minecraft.launcher.Http;
+import net.minecraft.launcher.Launcher;
 import net.minecraft.launcher.LauncherConstants;
 import net.minecraft.launcher.OperatingSystem;
 import net.minecraft.launcher.versions.CompleteVersion;
+import net.minecraft.launcher.versions.PartialVersion;
+import net.minecraft.launcher.versions.Version;
+
+import com.google.gson.JsonParseException;
 
 public class RemoteVersionList extends VersionList {
+    private static final String VERSION_LIST_PATH = "versions/versions.json";
+    private static final Pattern VERSION_PATH = Pattern.compile("versions/([^/]+)/\\1\\.json");
     private final Proxy proxy;
+    private final HttpCache cache;
 
     public RemoteVersionList(final Proxy proxy) {
+        this(proxy, null);
+    }
+
+    public RemoteVersionList(final Proxy proxy, final HttpCache cache) {
         this.proxy = proxy;
+        this.cache = cache;
+    }
+
+    public HttpCache getCache() {
+        return cache;
     }
 
     @Override
     protected String getContent(final String path) throws IOException {
-        return Http.performGet(new URL(LauncherConstants.URL_DOWNLOAD_BASE + path), proxy);
+        final URL url = new URL(LauncherConstants.URL_DOWNLOAD_BASE + path);
+        if(cache == null)
+            return Http.performGet(url, proxy);
+        if(VERSION_LIST_PATH.equals(path))
+            return cache.get(url, proxy, false);
+
+        final String cached = cache.getCached(url);
+        if(cached != null && isOutdated(path, cached)) {
+            Launcher.getInstance().println("Cached copy of " + url + " is older than the version list, revalidating");
+            return cache.revalidate(url, proxy);
+        }
+        return cache.get(url, proxy, true);
     }
 
     public Proxy getProxy() {
         return proxy;
     }
 
+    private boolean isOutdated(final String path, final String content) {
+        final Matcher matcher = VERSION_PATH.matcher(path);
+        if(!matcher.matches())
+            return false;
+        final Version listed = getVersion(matcher.group(1));
+        if(listed == null || listed.getUpdatedTime() == null)
+            return false;
+
+        try {
+            final PartialVersion cached = gson.fromJson(content, PartialVersion.class);
+            return cached == null || cached.getUpdatedTime() == null || cached.getUpdatedTime().before(listed.getUpdatedTime());
+        }
+        catch(final JsonParseException e) {
+            return true;
+        }
+    }
+
     @Override
     public boolean hasAllFiles(final CompleteVersion version, final OperatingSystem os) {
         return true;
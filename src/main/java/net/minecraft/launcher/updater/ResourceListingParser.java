@@ -0,0 +1,125 @@
+package net.minecraft.launcher.updater;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLEncoder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.minecraft.launcher.updater.download.DownloadTransport;
+
+import org.apache.commons.io.IOUtils;
+
+public class ResourceListingParser {
+    public static interface Callback {
+        public abstract void onResource(String key, String etag, long size) throws IOException;
+    }
+
+    private static final int MAX_PAGES = 1000;
+    private final XMLInputFactory factory;
+    private final DownloadTransport transport;
+
+    public ResourceListingParser(final DownloadTransport transport) {
+        this.transport = transport;
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    public int parse(final String baseUrl, final Proxy proxy, final Callback callback) throws IOException {
+        int pages = 0;
+        String marker = null;
+
+        do {
+            final URL url = new URL(marker == null ? baseUrl : baseUrl + "?marker=" + URLEncoder.encode(marker, "UTF-8"));
+            final HttpURLConnection connection = transport.open(url, proxy);
+            InputStream inputStream = null;
+            try {
+                inputStream = connection.getInputStream();
+                marker = parsePage(inputStream, callback);
+            }
+            finally {
+                IOUtils.closeQuietly(inputStream);
+                transport.release(connection);
+            }
+            pages++;
+        } while(marker != null && pages < MAX_PAGES);
+
+        return pages;
+    }
+
+    public String parsePage(final InputStream inputStream, final Callback callback) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(inputStream);
+
+            boolean truncated = false;
+            String nextMarker = null;
+            String lastKey = null;
+            String key = null;
+            String etag = null;
+            long size = -1L;
+            boolean inContents = false;
+
+            while(reader.hasNext()) {
+                final int event = reader.next();
+
+                if(event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+
+                    if("Contents".equals(name)) {
+                        inContents = true;
+                        key = null;
+                        etag = null;
+                        size = -1L;
+                    }
+                    else if(inContents && "Key".equals(name))
+                        key = reader.getElementText();
+                    else if(inContents && "ETag".equals(name))
+                        etag = reader.getElementText();
+                    else if(inContents && "Size".equals(name))
+                        try {
+                            size = Long.parseLong(reader.getElementText().trim());
+                        }
+                        catch(final NumberFormatException ignored) {
+                            size = -1L;
+                        }
+                    else if(!inContents && "IsTruncated".equals(name))
+                        truncated = Boolean.parseBoolean(reader.getElementText().trim());
+                    else if(!inContents && "NextMarker".equals(name))
+                        nextMarker = reader.getElementText();
+                }
+                else if(event == XMLStreamConstants.END_ELEMENT && "Contents".equals(reader.getLocalName())) {
+                    inContents = false;
+
+                    if(key != null) {
+                        lastKey = key;
+                        callback.onResource(key, etag == null ? "-" : etag, size);
+                    }
+                }
+            }
+
+            if(!truncated)
+                return null;
+            return nextMarker != null ? nextMarker : lastKey;
+        }
+        catch(final XMLStreamException e) {
+            throw new IOException("Couldn't parse resource listing", e);
+        }
+        finally {
+            if(reader != null)
+                try {
+                    reader.close();
+                }
+                catch(final XMLStreamException ignored) {
+                }
+        }
+    }
+}
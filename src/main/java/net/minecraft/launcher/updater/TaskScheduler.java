@@ -0,0 +1,143 @@
+package net.minecraft.launcher.updater;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.launcher.Launcher;
+import net.minecraft.launcher.updater.download.ConcurrencyController;
+
+public class TaskScheduler {
+    public static enum Pool {
+        CONTROL, NETWORK, DISK, HASHING
+    }
+
+    public static final int CONTROL_THREADS = Integer.getInteger("minecraft.scheduler.controlThreads", 4).intValue();
+    public static final int DISK_THREADS = Integer.getInteger("minecraft.scheduler.diskThreads", 2).intValue();
+    public static final boolean VIRTUAL_THREADS_REQUESTED = Boolean.getBoolean("minecraft.scheduler.virtualThreads");
+    public static final int VIRTUAL_NETWORK_THREADS = Integer.getInteger("minecraft.scheduler.virtualNetworkThreads", 256).intValue();
+    private static final long SHUTDOWN_WAIT_SECONDS = 10L;
+
+    private final boolean virtual;
+    private final ExecutorService controlExecutor;
+    private final ExecutorService networkExecutor;
+    private final ThreadPoolExecutor diskExecutor = new ExceptionalThreadPoolExecutor(DISK_THREADS, "Launcher-Disk", false);
+    private final ForkJoinPool hashingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    public TaskScheduler() {
+        this(VIRTUAL_THREADS_REQUESTED);
+    }
+
+    public TaskScheduler(final boolean useVirtualThreads) {
+        virtual = useVirtualThreads && VirtualThreads.isSupported();
+        if(useVirtualThreads && !virtual && Launcher.getInstance() != null)
+            Launcher.getInstance().println("Virtual threads were requested but aren't supported by this Java runtime, using platform threads");
+
+        if(virtual) {
+            controlExecutor = new VirtualThreadExecutor(CONTROL_THREADS, "Launcher-Control");
+            networkExecutor = new VirtualThreadExecutor(VIRTUAL_NETWORK_THREADS, "Launcher-Network");
+        }
+        else {
+            controlExecutor = new ExceptionalThreadPoolExecutor(CONTROL_THREADS, "Launcher-Control");
+            networkExecutor = new ExceptionalThreadPoolExecutor(ConcurrencyController.DEFAULT_MAX_THREADS, "Launcher-Network");
+        }
+    }
+
+    public int getActiveCount(final Pool pool) {
+        if(pool == Pool.HASHING)
+            return hashingPool.getActiveThreadCount();
+        final ExecutorService executor = getExecutor(pool);
+        if(executor instanceof VirtualThreadExecutor)
+            return ((VirtualThreadExecutor) executor).getActiveCount();
+        return ((ThreadPoolExecutor) executor).getActiveCount();
+    }
+
+    public ExecutorService getControlExecutor() {
+        return controlExecutor;
+    }
+
+    public ThreadPoolExecutor getDiskExecutor() {
+        return diskExecutor;
+    }
+
+    public ExecutorService getExecutor(final Pool pool) {
+        switch(pool) {
+            case CONTROL:
+                return controlExecutor;
+            case NETWORK:
+                return networkExecutor;
+            case DISK:
+                return diskExecutor;
+            default:
+                throw new IllegalArgumentException("Pool " + pool + " is not an executor service");
+        }
+    }
+
+    public ForkJoinPool getHashingPool() {
+        return hashingPool;
+    }
+
+    public ExecutorService getNetworkExecutor() {
+        return networkExecutor;
+    }
+
+    public int getPoolSize(final Pool pool) {
+        if(pool == Pool.HASHING)
+            return hashingPool.getPoolSize();
+        final ExecutorService executor = getExecutor(pool);
+        if(executor instanceof VirtualThreadExecutor)
+            return ((VirtualThreadExecutor) executor).getPoolSize();
+        return ((ThreadPoolExecutor) executor).getPoolSize();
+    }
+
+    public long getQueueDepth(final Pool pool) {
+        if(pool == Pool.HASHING)
+            return hashingPool.getQueuedTaskCount() + hashingPool.getQueuedSubmissionCount();
+        final ExecutorService executor = getExecutor(pool);
+        if(executor instanceof VirtualThreadExecutor)
+            return ((VirtualThreadExecutor) executor).getQueueDepth();
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public void shutdown() {
+        controlExecutor.shutdown();
+        networkExecutor.shutdown();
+        hashingPool.shutdown();
+
+        try {
+            diskExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        networkExecutor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+                    }
+                    catch(final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally {
+                        diskExecutor.shutdown();
+                    }
+                }
+            });
+        }
+        catch(final RejectedExecutionException e) {
+            diskExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        for(final Pool pool : Pool.values()) {
+            if(result.length() > 0)
+                result.append(", ");
+            result.append(pool.name().toLowerCase()).append(' ').append(getActiveCount(pool)).append('/').append(getPoolSize(pool)).append(" active, ").append(getQueueDepth(pool)).append(" queued");
+        }
+        return "TaskScheduler{" + (virtual ? "virtual" : "platform") + " threads, " + result + "}";
+    }
+}
@@ -50,6 +50,11 @@ public abstract class VersionList {
     }
 
     public CompleteVersion addVersion(final CompleteVersion version) {
+        addVersion((Version) version);
+        return version;
+    }
+
+    protected void addVersion(final Version version) {
         if(version.getId() == null)
             throw new IllegalArgumentException("Cannot add blank version");
         if(getVersion(version.getId()) != null)
@@ -57,8 +62,6 @@ public abstract class VersionList {
 
         versions.add(version);
         versionsByName.put(version.getId(), version);
-
-        return version;
     }
 
     protected void clearCache() {
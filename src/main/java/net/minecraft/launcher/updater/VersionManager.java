@@ -14,38 +14,65 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.SwingUtilities;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import net.minecraft.launcher.Launcher;
 import net.minecraft.launcher.LauncherConstants;
 import net.minecraft.launcher.OperatingSystem;
 import net.minecraft.launcher.events.RefreshedVersionsListener;
+import net.minecraft.launcher.updater.download.DigestSet;
 import net.minecraft.launcher.updater.download.DownloadJob;
+import net.minecraft.launcher.updater.download.DownloadPriority;
+import net.minecraft.launcher.updater.download.DownloadTransport;
 import net.minecraft.launcher.updater.download.Downloadable;
+import net.minecraft.launcher.updater.download.MirrorRegistry;
+import net.minecraft.launcher.updater.download.ObjectStore;
+import net.minecraft.launcher.updater.download.VerifiedFileIndex;
 import net.minecraft.launcher.versions.CompleteVersion;
 import net.minecraft.launcher.versions.ReleaseType;
 import net.minecraft.launcher.versions.Version;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 public class VersionManager {
+    private static final long REVALIDATE_INTERVAL_MILLIS = Long.getLong("minecraft.library.revalidateHours", 168L).longValue() * 3600000L;
     private final VersionList localVersionList;
     private final VersionList remoteVersionList;
-    private final ThreadPoolExecutor executorService = new ExceptionalThreadPoolExecutor(8);
+    private final TaskScheduler scheduler = new TaskScheduler();
     private final List<RefreshedVersionsListener> refreshedVersionsListeners = Collections.synchronizedList(new ArrayList<RefreshedVersionsListener>());
     private final Object refreshLock = new Object();
+    private final VerifiedFileIndex fileIndex;
+    private final ObjectStore objectStore;
+    private final GarbageCollector garbageCollector;
+    private final ResourceListingParser listingParser = new ResourceListingParser(DownloadTransport.getDefault());
+    private final AtomicBoolean revalidationRequested = new AtomicBoolean(Boolean.getBoolean("minecraft.library.revalidate"));
+    private volatile Set<String> assetKeys;
     private boolean isRefreshing;
 
     public VersionManager(final VersionList localVersionList, final VersionList remoteVersionList) {
         this.localVersionList = localVersionList;
         this.remoteVersionList = remoteVersionList;
+
+        if(remoteVersionList instanceof RemoteVersionList && ((RemoteVersionList) remoteVersionList).getCache() != null)
+            ((RemoteVersionList) remoteVersionList).getCache().setExecutor(scheduler.getNetworkExecutor());
+
+        if(localVersionList instanceof LocalVersionList) {
+            final File baseDirectory = ((LocalVersionList) localVersionList).getBaseDirectory();
+            final String objectsDirectory = System.getProperty("minecraft.objects.dir");
+            fileIndex = new VerifiedFileIndex(new File(baseDirectory, "verified_files.json"), REVALIDATE_INTERVAL_MILLIS);
+            objectStore = new ObjectStore(objectsDirectory != null ? new File(objectsDirectory) : new File(baseDirectory, "objects"));
+            garbageCollector = new GarbageCollector(this, baseDirectory);
+            ((LocalVersionList) localVersionList).setExecutor(scheduler.getHashingPool());
+        }
+        else {
+            fileIndex = null;
+            objectStore = null;
+            garbageCollector = null;
+        }
     }
 
     public void addRefreshedVersionsListener(final RefreshedVersionsListener listener) {
@@ -55,7 +82,14 @@ public class VersionManager {
     public DownloadJob downloadResources(final DownloadJob job) throws IOException {
         final File baseDirectory = ((LocalVersionList) localVersionList).getBaseDirectory();
 
-        job.addDownloadables(getResourceFiles(((RemoteVersionList) remoteVersionList).getProxy(), baseDirectory));
+        queueResourceFiles(((RemoteVersionList) remoteVersionList).getProxy(), baseDirectory, job);
+
+        synchronized(job) {
+            if(job.isStarted())
+                job.finishStreaming();
+            else
+                job.startDownloading(scheduler.getNetworkExecutor());
+        }
 
         return job;
     }
@@ -69,16 +103,49 @@ public class VersionManager {
         final File baseDirectory = ((LocalVersionList) localVersionList).getBaseDirectory();
         final Proxy proxy = ((RemoteVersionList) remoteVersionList).getProxy();
 
-        job.addDownloadables(version.getRequiredDownloadables(OperatingSystem.getCurrentPlatform(), proxy, baseDirectory, false));
-
+        final List<Downloadable> required = new ArrayList<Downloadable>(version.getRequiredDownloadables(OperatingSystem.getCurrentPlatform(), proxy, baseDirectory, false));
         final String jarFile = "versions/" + version.getId() + "/" + version.getId() + ".jar";
-        job.addDownloadables(new Downloadable[] { new Downloadable(proxy, new URL(LauncherConstants.URL_DOWNLOAD_BASE + jarFile), new File(baseDirectory, jarFile), false) });
+        required.add(new Downloadable(proxy, new URL(LauncherConstants.URL_DOWNLOAD_BASE + jarFile), new File(baseDirectory, jarFile), false));
+
+        final boolean revalidate = revalidationRequested.getAndSet(false);
+        final List<Downloadable> downloads = new ArrayList<Downloadable>();
+        for(final Downloadable downloadable : required) {
+            downloadable.setFileIndex(fileIndex);
+            downloadable.setObjectStore(objectStore);
+            downloadable.setPriority(DownloadPriority.CRITICAL);
+            if(revalidate || !isVerifiedInstall(downloadable))
+                downloads.add(downloadable);
+        }
+        job.addDownloadables(downloads);
+
+        if(revalidate)
+            Launcher.getInstance().println("Revalidating all " + required.size() + " file(s) for " + version.getId());
+        else if(downloads.size() < required.size())
+            Launcher.getInstance().println("Trusted " + (required.size() - downloads.size()) + " verified file(s) for " + version.getId() + " without network checks");
 
         return job;
     }
 
-    public ThreadPoolExecutor getExecutorService() {
-        return executorService;
+    private boolean isVerifiedInstall(final Downloadable downloadable) {
+        if(fileIndex == null || downloadable.shouldIgnoreLocal())
+            return false;
+        return fileIndex.isTrusted(downloadable.getTarget(), downloadable.getExpectedDigests().get(DigestSet.SHA1), REVALIDATE_INTERVAL_MILLIS);
+    }
+
+    public Set<String> getAssetKeys() {
+        return assetKeys;
+    }
+
+    public VerifiedFileIndex getFileIndex() {
+        return fileIndex;
+    }
+
+    public ObjectStore getObjectStore() {
+        return objectStore;
+    }
+
+    public GarbageCollector getGarbageCollector() {
+        return garbageCollector;
     }
 
     public List<VersionSyncInfo> getInstalledVersions() {
@@ -123,50 +190,92 @@ public class VersionManager {
         return remoteVersionList;
     }
 
-    private Set<Downloadable> getResourceFiles(final Proxy proxy, final File baseDirectory) {
-        final Set<Downloadable> result = new HashSet<Downloadable>();
-        try {
-            final URL resourceUrl = new URL(LauncherConstants.URL_RESOURCE_BASE);
-            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder db = dbf.newDocumentBuilder();
-            final Document doc = db.parse(resourceUrl.openConnection(proxy).getInputStream());
-            final NodeList nodeLst = doc.getElementsByTagName("Contents");
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
 
+    private void queueResourceFiles(final Proxy proxy, final File baseDirectory, final DownloadJob job) {
+        final List<Future<?>> verifications = new ArrayList<Future<?>>();
+        final Semaphore verificationSlots = new Semaphore(scheduler.getHashingPool().getParallelism() * 4);
+        final AtomicInteger mismatches = new AtomicInteger();
+        final Set<String> keys = Collections.synchronizedSet(new HashSet<String>());
+        try {
             final long start = System.nanoTime();
-            for(int i = 0; i < nodeLst.getLength(); i++) {
-                final Node node = nodeLst.item(i);
-
-                if(node.getNodeType() == 1) {
-                    final Element element = (Element) node;
-                    final String key = element.getElementsByTagName("Key").item(0).getChildNodes().item(0).getNodeValue();
-                    String etag = element.getElementsByTagName("ETag") != null ? element.getElementsByTagName("ETag").item(0).getChildNodes().item(0).getNodeValue() : "-";
-                    final long size = Long.parseLong(element.getElementsByTagName("Size").item(0).getChildNodes().item(0).getNodeValue());
-
-                    if(size > 0L) {
-                        final File file = new File(baseDirectory, "assets/" + key);
-                        if(etag.length() > 1) {
-                            etag = Downloadable.getEtag(etag);
-                            if(file.isFile() && file.length() == size) {
-                                final String localMd5 = Downloadable.getMD5(file);
-                                if(localMd5.equals(etag))
-                                    continue;
+            final int pages = listingParser.parse(LauncherConstants.URL_RESOURCE_BASE, proxy, new ResourceListingParser.Callback() {
+                public void onResource(final String key, final String etag, final long size) throws IOException {
+                    keys.add(key);
+                    if(size <= 0L)
+                        return;
+
+                    final File file = new File(baseDirectory, "assets/" + key);
+                    final Downloadable downloadable = new Downloadable(proxy, new URL(LauncherConstants.URL_RESOURCE_BASE + key), file, false);
+                    downloadable.setExpectedSize(size);
+                    downloadable.setFileIndex(fileIndex);
+                    downloadable.setObjectStore(objectStore);
+                    downloadable.setPriority(DownloadPriority.BACKGROUND);
+
+                    if(etag.length() <= 1 || !file.isFile() || file.length() != size) {
+                        mismatches.incrementAndGet();
+                        queueResourceDownload(job, downloadable);
+                        return;
+                    }
+
+                    verificationSlots.acquireUninterruptibly();
+                    verifications.add(scheduler.getHashingPool().submit(new Runnable() {
+                        public void run() {
+                            try {
+                                final String localMd5 = fileIndex.getMD5(file);
+                                if(Downloadable.getEtag(etag).equalsIgnoreCase(localMd5))
+                                    fileIndex.record(file, localMd5);
+                                else {
+                                    mismatches.incrementAndGet();
+                                    queueResourceDownload(job, downloadable);
+                                }
+                            }
+                            finally {
+                                verificationSlots.release();
                             }
                         }
-                        final Downloadable downloadable = new Downloadable(proxy, new URL(LauncherConstants.URL_RESOURCE_BASE + key), file, false);
-                        downloadable.setExpectedSize(size);
-                        result.add(downloadable);
-                    }
+                    }));
                 }
-            }
+            });
+
+            awaitVerifications(verifications);
             final long end = System.nanoTime();
             final long delta = end - start;
-            Launcher.getInstance().println("Delta time to compare resources: " + delta / 1000000L + " ms ");
+            Launcher.getInstance().println("Delta time to list and compare resources: " + delta / 1000000L + " ms (" + pages + " listing page(s), " + verifications.size() + " hashed, " + mismatches.get() + " queued)");
+            saveIndexes();
+
+            assetKeys = Collections.unmodifiableSet(keys);
+            if(garbageCollector != null)
+                garbageCollector.schedule();
         }
         catch(final Exception ex) {
             Launcher.getInstance().println("Couldn't download resources", ex);
+            awaitVerifications(verifications);
         }
+    }
 
-        return result;
+    private void awaitVerifications(final List<Future<?>> verifications) {
+        for(final Future<?> verification : verifications)
+            try {
+                verification.get();
+            }
+            catch(final ExecutionException e) {
+                Launcher.getInstance().println("Couldn't verify resource", e.getCause());
+            }
+            catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                verification.cancel(false);
+            }
+    }
+
+    private void queueResourceDownload(final DownloadJob job, final Downloadable downloadable) {
+        synchronized(job) {
+            if(!job.isStarted())
+                job.startStreaming(scheduler.getNetworkExecutor());
+        }
+        job.addDownloadable(downloadable);
     }
 
     public List<VersionSyncInfo> getVersions() {
@@ -223,11 +332,19 @@ public class VersionManager {
     }
 
     public VersionSyncInfo getVersionSyncInfo(final String name) {
-        return getVersionSyncInfo(localVersionList.getVersion(name), remoteVersionList.getVersion(name));
+        Version localVersion = localVersionList.getVersion(name);
+        if(localVersion != null && !(localVersion instanceof CompleteVersion))
+            try {
+                localVersion = localVersionList.getCompleteVersion(localVersion);
+            }
+            catch(final IOException e) {
+                Launcher.getInstance().println("Couldn't load local version " + name, e);
+            }
+        return getVersionSyncInfo(localVersion, remoteVersionList.getVersion(name));
     }
 
     public VersionSyncInfo getVersionSyncInfo(final Version version) {
-        return getVersionSyncInfo(version.getId());
+        return getVersionSyncInfo(localVersionList.getVersion(version.getId()), remoteVersionList.getVersion(version.getId()));
     }
 
     public VersionSyncInfo getVersionSyncInfo(final Version localVersion, final Version remoteVersion) {
@@ -238,14 +355,33 @@ public class VersionManager {
             upToDate = !remoteVersion.getUpdatedTime().after(localVersion.getUpdatedTime());
         if(localVersion instanceof CompleteVersion)
             upToDate &= localVersionList.hasAllFiles((CompleteVersion) localVersion, OperatingSystem.getCurrentPlatform());
+        else if(localVersion != null && localVersionList instanceof LocalVersionList) {
+            final CompleteVersion loaded = ((LocalVersionList) localVersionList).getLoadedVersion(localVersion.getId());
+            if(loaded != null)
+                upToDate &= localVersionList.hasAllFiles(loaded, OperatingSystem.getCurrentPlatform());
+        }
 
         return new VersionSyncInfo(localVersion, remoteVersion, installed, upToDate);
     }
 
+    public boolean isRefreshing() {
+        synchronized(refreshLock) {
+            return isRefreshing;
+        }
+    }
+
     public void refreshVersions() throws IOException {
         synchronized(refreshLock) {
             isRefreshing = true;
         }
+        if(remoteVersionList instanceof RemoteVersionList) {
+            final Proxy proxy = ((RemoteVersionList) remoteVersionList).getProxy();
+            scheduler.getNetworkExecutor().submit(new Runnable() {
+                public void run() {
+                    MirrorRegistry.getDefault().probe(proxy);
+                }
+            });
+        }
         try {
             Launcher.getInstance().println("Refreshing local version list...");
             localVersionList.refreshVersions();
@@ -264,6 +400,8 @@ public class VersionManager {
         synchronized(refreshLock) {
             isRefreshing = false;
         }
+        if(garbageCollector != null)
+            garbageCollector.schedule();
 
         final List<RefreshedVersionsListener> listeners = new ArrayList<RefreshedVersionsListener>(refreshedVersionsListeners);
         for(final Iterator<RefreshedVersionsListener> iterator = listeners.iterator(); iterator.hasNext();) {
@@ -284,6 +422,27 @@ public class VersionManager {
             });
     }
 
+    public void requestRevalidation() {
+        revalidationRequested.set(true);
+    }
+
+    public void saveIndexes() {
+        if(fileIndex != null)
+            try {
+                fileIndex.save();
+            }
+            catch(final IOException e) {
+                Launcher.getInstance().println("Couldn't save verified file index", e);
+            }
+        if(objectStore != null)
+            try {
+                objectStore.save();
+            }
+            catch(final IOException e) {
+                Launcher.getInstance().println("Couldn't save object store references", e);
+            }
+    }
+
     public void removeRefreshedVersionsListener(final RefreshedVersionsListener listener) {
         refreshedVersionsListeners.remove(listener);
     }
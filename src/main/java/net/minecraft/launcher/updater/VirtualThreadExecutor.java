@@ -0,0 +1,188 @@
+package net.minecraft.launcher.updater;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.minecraft.launcher.Launcher;
+
+public class VirtualThreadExecutor extends AbstractExecutorService {
+    private final ThreadFactory threadFactory;
+    private final int maximumPoolSize;
+    private final Semaphore permits;
+    private final Set<Thread> threads = new HashSet<Thread>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition terminated = lock.newCondition();
+    private boolean shutdown;
+
+    public VirtualThreadExecutor(final int maximumPoolSize, final String name) {
+        if(maximumPoolSize < 1)
+            throw new IllegalArgumentException("Maximum pool size must be positive");
+        threadFactory = VirtualThreads.newFactory(name);
+        this.maximumPoolSize = maximumPoolSize;
+        permits = new Semaphore(maximumPoolSize, true);
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while(!isTerminated()) {
+                if(remaining <= 0L)
+                    return false;
+                remaining = terminated.awaitNanos(remaining);
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void execute(final Runnable command) {
+        if(command == null)
+            throw new NullPointerException();
+
+        final Thread thread = threadFactory.newThread(new Runnable() {
+            public void run() {
+                try {
+                    permits.acquire();
+                    try {
+                        command.run();
+                    }
+                    finally {
+                        permits.release();
+                    }
+                }
+                catch(final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                catch(final Throwable t) {
+                    Launcher.getInstance().println("Unhandled exception in executor " + VirtualThreadExecutor.this, t);
+                }
+                finally {
+                    finished(Thread.currentThread());
+                }
+            }
+        });
+
+        lock.lock();
+        try {
+            if(shutdown)
+                throw new RejectedExecutionException("Executor has been shut down");
+            threads.add(thread);
+        }
+        finally {
+            lock.unlock();
+        }
+        thread.start();
+    }
+
+    private void finished(final Thread thread) {
+        lock.lock();
+        try {
+            threads.remove(thread);
+            if(isTerminated())
+                terminated.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveCount() {
+        return maximumPoolSize - permits.availablePermits();
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public int getPoolSize() {
+        lock.lock();
+        try {
+            return threads.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        return permits.getQueueLength();
+    }
+
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && threads.isEmpty();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+        return new ExceptionalThreadPoolExecutor.ExceptionalFutureTask<T>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
+        return new ExceptionalThreadPoolExecutor.ExceptionalFutureTask<T>(runnable, value);
+    }
+
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            if(isTerminated())
+                terminated.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Runnable> shutdownNow() {
+        final List<Thread> running;
+        lock.lock();
+        try {
+            shutdown = true;
+            running = new ArrayList<Thread>(threads);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        for(final Thread thread : running)
+            thread.interrupt();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadExecutor{" + getActiveCount() + "/" + maximumPoolSize + " active, " + getQueueDepth() + " queued}";
+    }
+}
@@ -0,0 +1,44 @@
+package net.minecraft.launcher.updater;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+public class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            factory.invoke(ofVirtual.invoke(null));
+        }
+        catch(final Throwable ignored) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    public static ThreadFactory newFactory(final String name) {
+        if(!isSupported())
+            throw new UnsupportedOperationException("Virtual threads are not supported by this runtime");
+        try {
+            return (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", Long.valueOf(1L)));
+        }
+        catch(final Exception e) {
+            throw new UnsupportedOperationException("Couldn't create virtual thread factory", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+public class BandwidthLimiter {
+    public static final long UNLIMITED = 0L;
+    private static final long MIN_BURST = 65536L;
+    private static final long BURST_DIVISOR = 4L;
+    private static BandwidthLimiter globalLimiter;
+
+    public static synchronized BandwidthLimiter getGlobal() {
+        if(globalLimiter == null)
+            globalLimiter = new BandwidthLimiter(Long.getLong("minecraft.download.maxBytesPerSecond", UNLIMITED).longValue());
+        return globalLimiter;
+    }
+
+    private volatile long bytesPerSecond;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    public BandwidthLimiter(final long bytesPerSecond) {
+        setBytesPerSecond(bytesPerSecond);
+    }
+
+    public void acquire(final long bytes) throws InterruptedIOException {
+        final long rate = bytesPerSecond;
+        if(rate <= UNLIMITED || bytes <= 0L)
+            return;
+
+        final long waitNanos;
+        synchronized(this) {
+            final long now = System.nanoTime();
+            final double burst = Math.max(MIN_BURST, rate / BURST_DIVISOR);
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000000000.0D);
+            lastRefill = now;
+            tokens -= bytes;
+            waitNanos = tokens >= 0.0D ? 0L : (long) (-tokens * 1000000000.0D / rate);
+        }
+
+        if(waitNanos > 0L)
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling download");
+            }
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public boolean isLimited() {
+        return bytesPerSecond > UNLIMITED;
+    }
+
+    public synchronized void setBytesPerSecond(final long bytesPerSecond) {
+        if(bytesPerSecond < UNLIMITED)
+            throw new IllegalArgumentException("Bandwidth limit cannot be negative");
+        this.bytesPerSecond = bytesPerSecond;
+        tokens = Math.min(tokens, Math.max(MIN_BURST, bytesPerSecond / BURST_DIVISOR));
+        lastRefill = System.nanoTime();
+    }
+}
@@ -0,0 +1,125 @@
+package net.minecraft.launcher.updater.download;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConcurrencyController {
+    private static class Window {
+        private long started = System.nanoTime();
+        private long bytes;
+        private int successes;
+        private int failures;
+        private double lastThroughput;
+        private int limit;
+
+        public Window(final int limit) {
+            this.limit = limit;
+        }
+    }
+
+    public static final int DEFAULT_MIN_THREADS = Integer.getInteger("minecraft.download.minThreads", 2).intValue();
+    public static final int DEFAULT_INITIAL_THREADS = Integer.getInteger("minecraft.download.initialThreads", 8).intValue();
+    public static final int DEFAULT_MAX_THREADS = Integer.getInteger("minecraft.download.maxThreads", 32).intValue();
+    private static final long SAMPLE_NANOS = 2000000000L;
+    private static final int MIN_SAMPLES = 4;
+    private static final double MAX_ERROR_RATE = 0.1D;
+    private static final double THROUGHPUT_GAIN = 1.05D;
+    private static final double THROUGHPUT_TOLERANCE = 0.95D;
+
+    private final int minimum;
+    private final int maximum;
+    private final Window job;
+    private final Map<String, Window> hosts = new HashMap<String, Window>();
+    private DownloadTransport transport;
+
+    public ConcurrencyController(final int minimum, final int initial, final int maximum) {
+        if(minimum < 1 || maximum < minimum)
+            throw new IllegalArgumentException("Invalid concurrency bounds " + minimum + ".." + maximum);
+        this.minimum = minimum;
+        this.maximum = maximum;
+        job = new Window(clamp(initial));
+    }
+
+    private int clamp(final int limit) {
+        return Math.max(minimum, Math.min(maximum, limit));
+    }
+
+    public synchronized int getLimit() {
+        return job.limit;
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+
+    public int getMinimum() {
+        return minimum;
+    }
+
+    private Window getWindow(final String host) {
+        Window window = hosts.get(host);
+        if(window == null) {
+            window = new Window(job.limit);
+            hosts.put(host, window);
+        }
+        return window;
+    }
+
+    public synchronized void onFailure(final String host) {
+        job.failures++;
+        sample(job);
+
+        final Window window = getWindow(host);
+        window.failures++;
+        if(sample(window) && transport != null)
+            transport.setHostLimit(this, host, window.limit);
+    }
+
+    public synchronized void onSuccess(final String host, final long bytes) {
+        job.successes++;
+        job.bytes += bytes;
+        sample(job);
+
+        final Window window = getWindow(host);
+        window.successes++;
+        window.bytes += bytes;
+        if(sample(window) && transport != null)
+            transport.setHostLimit(this, host, window.limit);
+    }
+
+    public void releaseHostLimits() {
+        if(transport != null)
+            transport.clearHostLimits(this);
+    }
+
+    private boolean sample(final Window window) {
+        final long now = System.nanoTime();
+        final long elapsed = now - window.started;
+        final int samples = window.successes + window.failures;
+
+        if(elapsed < SAMPLE_NANOS || samples < MIN_SAMPLES)
+            return false;
+
+        final double throughput = window.bytes * 1000000000.0D / elapsed;
+        final int previous = window.limit;
+
+        if((double) window.failures / samples > MAX_ERROR_RATE)
+            window.limit = clamp(window.limit / 2);
+        else if(throughput > window.lastThroughput * THROUGHPUT_GAIN)
+            window.limit = clamp(window.limit + 1);
+        else if(throughput < window.lastThroughput * THROUGHPUT_TOLERANCE)
+            window.limit = clamp(window.limit - 1);
+
+        window.lastThroughput = throughput;
+        window.started = now;
+        window.bytes = 0L;
+        window.successes = 0;
+        window.failures = 0;
+
+        return window.limit != previous;
+    }
+
+    public void setTransport(final DownloadTransport transport) {
+        this.transport = transport;
+    }
+}
@@ -0,0 +1,55 @@
+package net.minecraft.launcher.updater.download;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class DigestSet {
+    public static final String MD5 = "MD5";
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+
+    private final Map<String, String> digests = Collections.synchronizedMap(new LinkedHashMap<String, String>());
+
+    public DigestSet add(final String algorithm, final String hex) {
+        if(hex != null && hex.trim().length() > 0)
+            digests.put(algorithm, hex.trim().toLowerCase());
+        return this;
+    }
+
+    public String get(final String algorithm) {
+        return digests.get(algorithm);
+    }
+
+    public Set<String> getAlgorithms() {
+        synchronized(digests) {
+            return Collections.unmodifiableSet(new LinkedHashSet<String>(digests.keySet()));
+        }
+    }
+
+    public String getMismatch(final Map<String, String> actual) {
+        synchronized(digests) {
+            for(final Map.Entry<String, String> entry : digests.entrySet()) {
+                final String computed = actual.get(entry.getKey());
+                if(computed != null && !computed.equalsIgnoreCase(entry.getValue()))
+                    return entry.getKey() + " was " + computed + ", expected " + entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    public boolean has(final String algorithm) {
+        return digests.containsKey(algorithm);
+    }
+
+    public boolean isEmpty() {
+        return digests.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "DigestSet" + digests;
+    }
+}
@@ -3,27 +3,59 @@ package net.minecraft.launcher.updater.download;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import net.minecraft.launcher.AtomicFiles;
 import net.minecraft.launcher.Launcher;
+import net.minecraft.launcher.updater.VirtualThreadExecutor;
 
 public class DownloadJob {
     private static final int MAX_ATTEMPTS_PER_FILE = 5;
     private static final int ASSUMED_AVERAGE_FILE_SIZE = 5242880;
-    private final Queue<Downloadable> remainingFiles = new ConcurrentLinkedQueue<Downloadable>();
+    private static final long STREAMING_POLL_MILLIS = 250L;
+    private static final Set<DownloadJob> activeJobs = new HashSet<DownloadJob>();
+    private final DownloadQueue remainingFiles = new DownloadQueue();
+    private final RetryScheduler retries = new RetryScheduler();
+    private final HostCircuitBreaker circuitBreaker = HostCircuitBreaker.getDefault();
+    private final AtomicFiles.SyncBatch syncBatch = new AtomicFiles.SyncBatch();
+    private final DownloadRegistry registry = DownloadRegistry.getDefault();
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(BandwidthLimiter.UNLIMITED);
     private final List<Downloadable> allFiles = Collections.synchronizedList(new ArrayList<Downloadable>());
     private final List<Downloadable> failures = Collections.synchronizedList(new ArrayList<Downloadable>());
     private final List<Downloadable> successful = Collections.synchronizedList(new ArrayList<Downloadable>());
-    private final List<ProgressContainer> progressContainers = Collections.synchronizedList(new ArrayList<ProgressContainer>());
+    private final List<Downloadable> cancelled = Collections.synchronizedList(new ArrayList<Downloadable>());
+    private final LongAdder currentBytes = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final AtomicBoolean progressChanged = new AtomicBoolean();
+    private final AtomicBoolean finishReported = new AtomicBoolean();
     private final DownloadListener listener;
     private final String name;
     private final boolean ignoreFailures;
     private final AtomicInteger remainingThreads = new AtomicInteger();
-    private boolean started;
+    private ConcurrencyController concurrency;
+    private ExecutorService executorService;
+    private int weight = 1;
+    private DownloadPriority priority = DownloadPriority.NORMAL;
+    private volatile boolean started;
+    private volatile boolean streaming;
+    private volatile DownloadState state = DownloadState.QUEUED;
+
+    public static void cancelAll() {
+        final List<DownloadJob> jobs;
+        synchronized(activeJobs) {
+            jobs = new ArrayList<DownloadJob>(activeJobs);
+        }
+        for(final DownloadJob job : jobs)
+            job.cancel();
+    }
 
     public DownloadJob(final String name, final boolean ignoreFailures, final DownloadListener listener) {
         this(name, ignoreFailures, listener, null);
@@ -37,21 +69,21 @@ public class DownloadJob {
             addDownloadables(files);
     }
 
+    public void addDownloadable(final Downloadable downloadable) {
+        if(started && !streaming)
+            throw new IllegalStateException("Cannot add to download job that has already started");
+
+        register(downloadable);
+        remainingFiles.add(downloadable);
+    }
+
     public void addDownloadables(final Collection<Downloadable> downloadables) {
         if(started)
             throw new IllegalStateException("Cannot add to download job that has already started");
 
-        allFiles.addAll(downloadables);
+        for(final Downloadable downloadable : downloadables)
+            register(downloadable);
         remainingFiles.addAll(downloadables);
-
-        for(final Downloadable downloadable : downloadables) {
-            progressContainers.add(downloadable.getMonitor());
-            if(downloadable.getExpectedSize() == 0L)
-                downloadable.getMonitor().setTotal(5242880L);
-            else
-                downloadable.getMonitor().setTotal(downloadable.getExpectedSize());
-            downloadable.getMonitor().setJob(this);
-        }
     }
 
     public void addDownloadables(final Downloadable[] downloadables) {
@@ -59,103 +91,374 @@ public class DownloadJob {
             throw new IllegalStateException("Cannot add to download job that has already started");
 
         for(final Downloadable downloadable : downloadables) {
-            allFiles.add(downloadable);
+            register(downloadable);
             remainingFiles.add(downloadable);
-            progressContainers.add(downloadable.getMonitor());
-            if(downloadable.getExpectedSize() == 0L)
-                downloadable.getMonitor().setTotal(5242880L);
-            else
-                downloadable.getMonitor().setTotal(downloadable.getExpectedSize());
-            downloadable.getMonitor().setJob(this);
         }
     }
 
+    public void cancel() {
+        final DownloadState previous = state;
+        if(previous == DownloadState.CANCELLED || previous == DownloadState.SUCCEEDED || previous == DownloadState.FAILED)
+            return;
+        state = DownloadState.CANCELLED;
+        Launcher.getInstance().println("Download job '" + name + "' cancelled");
+
+        interruptTransfers();
+        if(remainingThreads.get() <= 0)
+            finished();
+    }
+
+    public void finishStreaming() {
+        if(!streaming)
+            throw new IllegalStateException("Download job is not streaming");
+        streaming = false;
+        Launcher.getInstance().println("Download job '" + name + "' stopped accepting files (" + allFiles.size() + " files)");
+    }
+
+    public int getCancelled() {
+        return cancelled.size();
+    }
+
     public int getFailures() {
         return failures.size();
     }
 
+    private int getMaximumPoolSize() {
+        if(executorService instanceof VirtualThreadExecutor)
+            return ((VirtualThreadExecutor) executorService).getMaximumPoolSize();
+        if(executorService instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor) executorService).getMaximumPoolSize();
+        return ConcurrencyController.DEFAULT_MAX_THREADS;
+    }
+
     public String getName() {
         return name;
     }
 
     public float getProgress() {
-        float current = 0.0F;
-        float total = 0.0F;
-
-        synchronized(progressContainers) {
-            for(final ProgressContainer progress : progressContainers) {
-                total += progress.getTotal();
-                current += progress.getCurrent();
-            }
-        }
+        final long total = totalBytes.sum();
 
         float result = -1.0F;
-        if(total > 0.0F)
-            result = current / total;
+        if(total > 0L)
+            result = Math.min(1.0F, (float) currentBytes.sum() / (float) total);
         return result;
     }
 
+    public DownloadPriority getPriority() {
+        return priority;
+    }
+
+    public DownloadState getState() {
+        return state;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    private int getWorkerLimit() {
+        final int limit = Math.min(concurrency.getLimit(), getMaximumPoolSize());
+        int totalWeight = 0;
+
+        synchronized(activeJobs) {
+            for(final DownloadJob job : activeJobs)
+                if(job.state == DownloadState.RUNNING)
+                    totalWeight += job.weight;
+        }
+        if(totalWeight <= weight)
+            return limit;
+        return Math.max(1, limit * weight / totalWeight);
+    }
+
     public int getSuccessful() {
         return successful.size();
     }
 
+    private boolean hasPendingWork() {
+        return streaming || !remainingFiles.isEmpty() || !retries.isEmpty();
+    }
+
+    private void interruptTransfers() {
+        synchronized(allFiles) {
+            for(final Downloadable downloadable : allFiles)
+                downloadable.interrupt();
+        }
+    }
+
     public boolean isComplete() {
-        return started && remainingFiles.isEmpty() && remainingThreads.get() == 0;
+        if(finishReported.get())
+            return true;
+        return started && state != DownloadState.PAUSED && !hasPendingWork() && remainingThreads.get() == 0;
     }
 
     public boolean isStarted() {
         return started;
     }
 
+    public boolean isStopRequested() {
+        final DownloadState current = state;
+        return current == DownloadState.PAUSED || current == DownloadState.CANCELLED;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    private Downloadable nextDownloadable() {
+        while(true) {
+            if(state != DownloadState.RUNNING)
+                return null;
+            final boolean open = streaming;
+            retries.drainTo(remainingFiles);
+
+            final boolean waiting = open || !retries.isEmpty();
+            Downloadable downloadable = null;
+            try {
+                downloadable = waiting ? remainingFiles.poll(Math.max(1L, Math.min(STREAMING_POLL_MILLIS, retries.getNextDelayMillis())), TimeUnit.MILLISECONDS) : remainingFiles.poll();
+            }
+            catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if(downloadable == null) {
+                if(!waiting)
+                    return null;
+                continue;
+            }
+
+            final long blocked = circuitBreaker.getBlockedMillis(downloadable.selectSource().getHost());
+            if(blocked <= 0L)
+                return downloadable;
+            retries.defer(downloadable, blocked);
+        }
+    }
+
+    private void adjustWorkers() {
+        final int limit = getWorkerLimit();
+
+        while(true) {
+            final int current = remainingThreads.get();
+            if(current >= limit || remainingFiles.isEmpty())
+                return;
+            if(remainingThreads.compareAndSet(current, current + 1))
+                submitWorker();
+        }
+    }
+
+    private void finished() {
+        if(!finishReported.compareAndSet(false, true))
+            return;
+        if(state != DownloadState.CANCELLED)
+            state = failures.isEmpty() ? DownloadState.SUCCEEDED : DownloadState.FAILED;
+
+        syncBatch.sync();
+        if(concurrency != null)
+            concurrency.releaseHostLimits();
+        synchronized(activeJobs) {
+            activeJobs.remove(this);
+        }
+        ProgressTicker.getDefault().unregister(this);
+        listener.onDownloadJobFinished(this);
+    }
+
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    public ConcurrencyController getConcurrencyController() {
+        return concurrency;
+    }
+
     private void popAndDownload() {
         Downloadable downloadable;
-        while((downloadable = remainingFiles.poll()) != null)
-            if(downloadable.getNumAttempts() > 5) {
-                if(!ignoreFailures)
-                    failures.add(downloadable);
-                Launcher.getInstance().println("Gave up trying to download " + downloadable.getUrl() + " for job '" + name + "'");
+        while((downloadable = nextDownloadable()) != null) {
+            final String host = downloadable.getUrl().getHost();
+            final long before = downloadable.getMonitor().getCurrent();
+            downloadable.setSegmentExecutor(executorService);
+            try {
+                final String result = registry.download(downloadable);
+                successful.add(downloadable);
+                concurrency.onSuccess(host, Math.max(0L, downloadable.getMonitor().getCurrent() - before));
+                circuitBreaker.onSuccess(host);
+                Launcher.getInstance().println("Finished downloading " + downloadable.getTarget() + " for job '" + name + "'" + ": " + result);
             }
-            else
-                try {
-                    final String result = downloadable.download();
-                    successful.add(downloadable);
-                    Launcher.getInstance().println("Finished downloading " + downloadable.getTarget() + " for job '" + name + "'" + ": " + result);
-                }
-                catch(final Throwable t) {
-                    Launcher.getInstance().println("Couldn't download " + downloadable.getUrl() + " for job '" + name + "'", t);
+            catch(final DownloadStoppedException e) {
+                if(downloadable.isCancelled() || state == DownloadState.CANCELLED)
+                    cancelled.add(downloadable);
+                else if(state == DownloadState.PAUSED) {
+                    downloadable.refundAttempt();
                     remainingFiles.add(downloadable);
                 }
+                else {
+                    final long delay = retries.schedule(downloadable);
+                    Launcher.getInstance().println("Shared download of " + downloadable.getTarget() + " was stopped by another job, retrying in " + delay + " ms for job '" + name + "'");
+                }
+            }
+            catch(final Throwable t) {
+                concurrency.onFailure(host);
+                if(circuitBreaker.onFailure(host))
+                    Launcher.getInstance().println("Too many failures from " + host + ", pausing requests to it for job '" + name + "'");
+
+                if(downloadable.getNumAttempts() >= MAX_ATTEMPTS_PER_FILE) {
+                    if(!ignoreFailures)
+                        failures.add(downloadable);
+                    Launcher.getInstance().println("Gave up trying to download " + downloadable.getUrl() + " for job '" + name + "'", t);
+                }
+                else {
+                    final long delay = retries.schedule(downloadable);
+                    Launcher.getInstance().println("Couldn't download " + downloadable.getUrl() + " for job '" + name + "', retrying in " + delay + " ms", t);
+                }
+            }
+
+            adjustWorkers();
+            if(shouldRetire())
+                return;
+        }
         if(remainingThreads.decrementAndGet() <= 0)
-            listener.onDownloadJobFinished(this);
+            if(state == DownloadState.PAUSED)
+                listener.onDownloadJobProgressChanged(this);
+            else if(state == DownloadState.RUNNING && hasPendingWork())
+                resumeWorkers();
+            else
+                finished();
+    }
+
+    public void pause() {
+        if(state != DownloadState.RUNNING)
+            return;
+        state = DownloadState.PAUSED;
+        Launcher.getInstance().println("Download job '" + name + "' paused");
+
+        interruptTransfers();
+    }
+
+    private void register(final Downloadable downloadable) {
+        allFiles.add(downloadable);
+        downloadable.setSyncBatch(syncBatch);
+        if(downloadable.getMirrors() == null)
+            downloadable.setMirrors(MirrorRegistry.getDefault().getMirrors(downloadable.getUrl()));
+        if(downloadable.getExpectedSize() == 0L)
+            downloadable.getMonitor().setTotal(ASSUMED_AVERAGE_FILE_SIZE);
+        else
+            downloadable.getMonitor().setTotal(downloadable.getExpectedSize());
+        downloadable.getMonitor().setJob(this);
+    }
+
+    public void resume() {
+        if(state != DownloadState.PAUSED)
+            return;
+        state = DownloadState.RUNNING;
+        Launcher.getInstance().println("Download job '" + name + "' resumed");
+
+        resumeWorkers();
+    }
+
+    private void resumeWorkers() {
+        final int limit = Math.max(1, getWorkerLimit());
+
+        while(true) {
+            final int current = remainingThreads.get();
+            if(current >= limit)
+                return;
+            if(remainingThreads.compareAndSet(current, current + 1))
+                submitWorker();
+        }
+    }
+
+    public void setConcurrencyController(final ConcurrencyController concurrency) {
+        if(started)
+            throw new IllegalStateException("Cannot change concurrency of a download job that has already started");
+        this.concurrency = concurrency;
+    }
+
+    public void setPriority(final DownloadPriority priority) {
+        this.priority = priority;
+    }
+
+    public void setWeight(final int weight) {
+        if(weight < 1)
+            throw new IllegalArgumentException("Weight must be positive");
+        this.weight = weight;
     }
 
     public boolean shouldIgnoreFailures() {
         return ignoreFailures;
     }
 
-    public void startDownloading(final ThreadPoolExecutor executorService) {
+    private boolean shouldRetire() {
+        final int limit = getWorkerLimit();
+        final int current = remainingThreads.get();
+
+        return current > limit && remainingThreads.compareAndSet(current, current - 1);
+    }
+
+    public void startDownloading(final ExecutorService executorService) {
         if(started)
             throw new IllegalStateException("Cannot start download job that has already started");
         started = true;
+        if(state == DownloadState.CANCELLED)
+            return;
 
         if(allFiles.isEmpty()) {
             Launcher.getInstance().println("Download job '" + name + "' skipped as there are no files to download");
+            finishReported.set(true);
+            state = DownloadState.SUCCEEDED;
             listener.onDownloadJobFinished(this);
         }
-        else {
-            final int threads = executorService.getMaximumPoolSize();
-            remainingThreads.set(threads);
-            Launcher.getInstance().println("Download job '" + name + "' started (" + threads + " threads, " + allFiles.size() + " files)");
-            for(int i = 0; i < threads; i++)
-                executorService.submit(new Runnable() {
-                    public void run() {
-                        DownloadJob.this.popAndDownload();
-                    }
-                });
+        else
+            startWorkers(executorService);
+    }
+
+    private void startWorkers(final ExecutorService executorService) {
+        this.executorService = executorService;
+        state = DownloadState.RUNNING;
+        if(concurrency == null)
+            concurrency = new ConcurrencyController(ConcurrencyController.DEFAULT_MIN_THREADS, ConcurrencyController.DEFAULT_INITIAL_THREADS, Math.max(ConcurrencyController.DEFAULT_MAX_THREADS, getMaximumPoolSize()));
+        concurrency.setTransport(DownloadTransport.getDefault());
+
+        synchronized(activeJobs) {
+            activeJobs.add(this);
         }
+        ProgressTicker.getDefault().register(this);
+
+        final int threads = getWorkerLimit();
+        remainingThreads.set(threads);
+        Launcher.getInstance().println("Download job '" + name + "' started (" + threads + " threads, " + allFiles.size() + " files" + (streaming ? " so far" : "") + ")");
+        for(int i = 0; i < threads; i++)
+            submitWorker();
+    }
+
+    public void startStreaming(final ExecutorService executorService) {
+        if(started)
+            throw new IllegalStateException("Cannot start download job that has already started");
+        streaming = true;
+        started = true;
+        if(state == DownloadState.CANCELLED)
+            return;
+
+        startWorkers(executorService);
+    }
+
+    private void submitWorker() {
+        executorService.submit(new Runnable() {
+            public void run() {
+                DownloadJob.this.popAndDownload();
+            }
+        });
+    }
+
+    public void addCurrent(final long amount) {
+        currentBytes.add(amount);
+        progressChanged.set(true);
+    }
+
+    public void addTotal(final long amount) {
+        totalBytes.add(amount);
+        progressChanged.set(true);
     }
 
-    public void updateProgress() {
-        listener.onDownloadJobProgressChanged(this);
+    public void publishProgress() {
+        if(progressChanged.getAndSet(false))
+            listener.onDownloadJobProgressChanged(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package net.minecraft.launcher.updater.download;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class DownloadQueue {
+    private static class SizeBuckets {
+        private final TreeMap<Long, ArrayDeque<Downloadable>> buckets = new TreeMap<Long, ArrayDeque<Downloadable>>();
+        private boolean takeLargest = true;
+        private int size;
+
+        public void add(final Downloadable downloadable) {
+            final Long key = Long.valueOf(downloadable.getExpectedSize());
+            ArrayDeque<Downloadable> bucket = buckets.get(key);
+            if(bucket == null) {
+                bucket = new ArrayDeque<Downloadable>();
+                buckets.put(key, bucket);
+            }
+            bucket.add(downloadable);
+            size++;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public Downloadable poll() {
+            if(size == 0)
+                return null;
+
+            final Map.Entry<Long, ArrayDeque<Downloadable>> entry = takeLargest ? buckets.lastEntry() : buckets.firstEntry();
+            final Downloadable result = entry.getValue().poll();
+            if(entry.getValue().isEmpty())
+                buckets.remove(entry.getKey());
+
+            takeLargest = !takeLargest;
+            size--;
+            return result;
+        }
+    }
+
+    private final Map<DownloadPriority, SizeBuckets> queues = new EnumMap<DownloadPriority, SizeBuckets>(DownloadPriority.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int size;
+
+    public DownloadQueue() {
+        for(final DownloadPriority priority : DownloadPriority.values())
+            queues.put(priority, new SizeBuckets());
+    }
+
+    public void add(final Downloadable downloadable) {
+        lock.lock();
+        try {
+            queues.get(downloadable.getPriority()).add(downloadable);
+            size++;
+            notEmpty.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void addAll(final Collection<Downloadable> downloadables) {
+        lock.lock();
+        try {
+            for(final Downloadable downloadable : downloadables) {
+                queues.get(downloadable.getPriority()).add(downloadable);
+                size++;
+            }
+            notEmpty.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public Downloadable poll() {
+        lock.lock();
+        try {
+            for(final SizeBuckets queue : queues.values())
+                if(!queue.isEmpty()) {
+                    size--;
+                    return queue.poll();
+                }
+            return null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public Downloadable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while(size == 0 && remaining > 0L)
+                remaining = notEmpty.awaitNanos(remaining);
+
+            return poll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DownloadRegistry {
+    private static class Transfer {
+        private final Downloadable owner;
+        private final FutureTask<String> task;
+
+        public Transfer(final Downloadable owner) {
+            this.owner = owner;
+            task = new FutureTask<String>(new Callable<String>() {
+                public String call() throws Exception {
+                    return owner.download();
+                }
+            });
+        }
+    }
+
+    private static final long STOP_POLL_MILLIS = 250L;
+    private static DownloadRegistry defaultRegistry;
+
+    public static synchronized DownloadRegistry getDefault() {
+        if(defaultRegistry == null)
+            defaultRegistry = new DownloadRegistry();
+        return defaultRegistry;
+    }
+
+    private final ConcurrentMap<String, Transfer> transfers = new ConcurrentHashMap<String, Transfer>();
+
+    private String await(final FutureTask<String> task, final Downloadable follower) throws IOException {
+        try {
+            while(true)
+                try {
+                    return task.get(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                catch(final TimeoutException e) {
+                    if(follower != null)
+                        follower.checkStopped();
+                }
+        }
+        catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for download");
+        }
+        catch(final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    public String download(final Downloadable downloadable) throws IOException {
+        final String key = downloadable.getTarget().getAbsolutePath();
+        final Transfer transfer = new Transfer(downloadable);
+        final Transfer existing = transfers.putIfAbsent(key, transfer);
+
+        if(existing == null)
+            try {
+                transfer.task.run();
+                return await(transfer.task, null);
+            }
+            finally {
+                transfers.remove(key, transfer);
+            }
+
+        downloadable.getMonitor().follow(existing.owner.getMonitor());
+        try {
+            return "Shared in-flight transfer of " + existing.owner.getUrl() + ": " + await(existing.task, downloadable);
+        }
+        finally {
+            downloadable.getMonitor().unfollow(existing.owner.getMonitor());
+        }
+    }
+
+    public boolean isInFlight(final Downloadable downloadable) {
+        return transfers.containsKey(downloadable.getTarget().getAbsolutePath());
+    }
+}
@@ -0,0 +1,5 @@
+package net.minecraft.launcher.updater.download;
+
+public enum DownloadState {
+    QUEUED, RUNNING, PAUSED, CANCELLED, SUCCEEDED, FAILED
+}
@@ -0,0 +1,11 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.InterruptedIOException;
+
+public class DownloadStoppedException extends InterruptedIOException {
+    private static final long serialVersionUID = 1L;
+
+    public DownloadStoppedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,197 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class DownloadTransport {
+    private static class HostPermits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+        private int limit;
+
+        public HostPermits(final int limit) {
+            super(limit, true);
+            this.limit = limit;
+        }
+
+        public synchronized void resize(final int newLimit) {
+            if(newLimit > limit)
+                release(newLimit - limit);
+            else if(newLimit < limit)
+                reducePermits(limit - newLimit);
+            limit = newLimit;
+        }
+    }
+
+    public static final int DEFAULT_CONNECTIONS_PER_HOST = 8;
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 60000;
+    private static final int MAX_DRAIN_BYTES = 65536;
+    private static final long PERMIT_POLL_MILLIS = 250L;
+    private static DownloadTransport defaultTransport;
+
+    public static synchronized DownloadTransport getDefault() {
+        if(defaultTransport == null)
+            defaultTransport = new DownloadTransport(DEFAULT_CONNECTIONS_PER_HOST);
+        return defaultTransport;
+    }
+
+    private final int connectionsPerHost;
+    private final ConcurrentMap<String, HostPermits> hostPermits = new ConcurrentHashMap<String, HostPermits>();
+    private final ConcurrentMap<HttpURLConnection, Semaphore> leases = new ConcurrentHashMap<HttpURLConnection, Semaphore>();
+    private final Map<String, Map<Object, Integer>> requestedLimits = new HashMap<String, Map<Object, Integer>>();
+
+    public DownloadTransport(final int connectionsPerHost) {
+        this.connectionsPerHost = connectionsPerHost;
+
+        if(System.getProperty("http.keepAlive") == null)
+            System.setProperty("http.keepAlive", "true");
+        if(System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(connectionsPerHost, ConcurrencyController.DEFAULT_MAX_THREADS)));
+    }
+
+    private void acquire(final Semaphore permits, final String host, final Downloadable owner) throws IOException {
+        try {
+            while(!permits.tryAcquire(PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS))
+                if(owner != null)
+                    owner.checkStopped();
+        }
+        catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+        }
+
+        if(owner != null)
+            try {
+                owner.checkStopped();
+            }
+            catch(final DownloadStoppedException e) {
+                permits.release();
+                throw e;
+            }
+    }
+
+    private void applyHostLimit(final String host) {
+        final Map<Object, Integer> requests = requestedLimits.get(host);
+        int limit = connectionsPerHost;
+        if(requests != null && !requests.isEmpty()) {
+            limit = 1;
+            for(final Integer requested : requests.values())
+                limit = Math.max(limit, requested.intValue());
+        }
+        getPermits(host).resize(limit);
+    }
+
+    public void abort(final HttpURLConnection connection) {
+        final Semaphore permits = leases.remove(connection);
+        connection.disconnect();
+        if(permits != null)
+            permits.release();
+    }
+
+    private void drain(final InputStream inputStream) {
+        if(inputStream == null)
+            return;
+        try {
+            final byte[] buffer = new byte[8192];
+            int drained = 0;
+            int read;
+            while(drained < MAX_DRAIN_BYTES && (read = inputStream.read(buffer)) >= 0)
+                drained += read;
+        }
+        catch(final IOException ignored) {
+        }
+        finally {
+            Downloadable.closeSilently(inputStream);
+        }
+    }
+
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    private HostPermits getPermits(final String host) {
+        HostPermits permits = hostPermits.get(host);
+        if(permits == null) {
+            final HostPermits created = new HostPermits(connectionsPerHost);
+            permits = hostPermits.putIfAbsent(host, created);
+            if(permits == null)
+                permits = created;
+        }
+        return permits;
+    }
+
+    public synchronized void clearHostLimits(final Object owner) {
+        for(final Iterator<Map.Entry<String, Map<Object, Integer>>> iterator = requestedLimits.entrySet().iterator(); iterator.hasNext();) {
+            final Map.Entry<String, Map<Object, Integer>> entry = iterator.next();
+            if(entry.getValue().remove(owner) == null)
+                continue;
+            if(entry.getValue().isEmpty())
+                iterator.remove();
+            applyHostLimit(entry.getKey());
+        }
+    }
+
+    public HttpURLConnection open(final URL url, final Proxy proxy) throws IOException {
+        return open(url, proxy, null);
+    }
+
+    public HttpURLConnection open(final URL url, final Proxy proxy, final Downloadable owner) throws IOException {
+        final Semaphore permits = getPermits(url.getHost());
+        acquire(permits, url.getHost(), owner);
+
+        final HttpURLConnection connection;
+        try {
+            connection = (HttpURLConnection) url.openConnection(proxy);
+        }
+        catch(final IOException e) {
+            permits.release();
+            throw e;
+        }
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        leases.put(connection, permits);
+
+        return connection;
+    }
+
+    public synchronized void setHostLimit(final Object owner, final String host, final int limit) {
+        if(limit < 1)
+            throw new IllegalArgumentException("Host limit must be positive");
+
+        Map<Object, Integer> requests = requestedLimits.get(host);
+        if(requests == null) {
+            requests = new HashMap<Object, Integer>();
+            requestedLimits.put(host, requests);
+        }
+        requests.put(owner, Integer.valueOf(limit));
+        applyHostLimit(host);
+    }
+
+    public void release(final HttpURLConnection connection) {
+        final Semaphore permits = leases.remove(connection);
+        try {
+            final int status = connection.getResponseCode();
+            if(status >= 400)
+                drain(connection.getErrorStream());
+            else if(status / 100 != 2)
+                drain(connection.getInputStream());
+        }
+        catch(final IOException ignored) {
+        }
+        finally {
+            if(permits != null)
+                permits.release();
+        }
+    }
+}
@@ -11,11 +11,39 @@ import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
 import java.net.URL;
-import java.security.DigestInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import net.minecraft.launcher.AtomicFiles;
+import net.minecraft.launcher.Launcher;
+import net.minecraft.launcher.OperatingSystem;
 
 public class Downloadable {
+    private static final int BUFFER_SIZE = 65536;
+    private static final long MAP_THRESHOLD = 1048576L;
+    private static final long MAP_CHUNK_SIZE = 67108864L;
+    private static final ThreadLocal<byte[]> COPY_BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private static final ThreadLocal<ByteBuffer> READ_BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
     public static void closeSilently(final Closeable closeable) {
         if(closeable != null)
             try {
@@ -44,6 +72,28 @@ public class Downloadable {
         return String.format("%1$032x", new Object[] { new BigInteger(1, digest.digest()) });
     }
 
+    public static void copyAndDigest(final InputStream inputStream, final FileChannel channel, final MultiDigest digest) throws IOException {
+        final byte[] buffer = COPY_BUFFERS.get();
+        final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        try {
+            int read = inputStream.read(buffer);
+            while(read >= 0) {
+                if(read > 0) {
+                    digest.update(buffer, 0, read);
+                    wrapped.limit(read);
+                    wrapped.position(0);
+                    while(wrapped.hasRemaining())
+                        channel.write(wrapped);
+                }
+                read = inputStream.read(buffer);
+            }
+        }
+        finally {
+            closeSilently(inputStream);
+            closeSilently(channel);
+        }
+    }
+
     public static String getEtag(final HttpURLConnection connection) {
         return getEtag(connection.getHeaderField("ETag"));
     }
@@ -57,24 +107,43 @@ public class Downloadable {
         return etag;
     }
 
-    public static String getMD5(final File file) {
-        DigestInputStream stream = null;
+    private static void digestFile(final File file, final MultiDigest digest) throws IOException {
+        final FileChannel channel = new FileInputStream(file).getChannel();
         try {
-            stream = new DigestInputStream(new FileInputStream(file), MessageDigest.getInstance("MD5"));
-            final byte[] buffer = new byte[65536];
+            final long size = channel.size();
+
+            if(size >= MAP_THRESHOLD && OperatingSystem.getCurrentPlatform() != OperatingSystem.WINDOWS)
+                for(long position = 0L; position < size; position += MAP_CHUNK_SIZE)
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position)));
+            else {
+                final ByteBuffer buffer = READ_BUFFERS.get();
+                buffer.clear();
+                while(channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        finally {
+            closeSilently(channel);
+        }
+    }
 
-            int read = stream.read(buffer);
-            while(read >= 1)
-                read = stream.read(buffer);
+    public static Map<String, String> getDigests(final File file, final Collection<String> algorithms) {
+        try {
+            final MultiDigest digest = new MultiDigest(algorithms);
+            digestFile(file, digest);
+            return digest.digest();
         }
         catch(final Exception ignored) {
             return null;
         }
-        finally {
-            closeSilently(stream);
-        }
+    }
 
-        return String.format("%1$032x", new Object[] { new BigInteger(1, stream.getMessageDigest().digest()) });
+    public static String getMD5(final File file) {
+        final Map<String, String> digests = getDigests(file, Collections.singleton(DigestSet.MD5));
+        return digests == null ? null : digests.get(DigestSet.MD5);
     }
 
     private final URL url;
@@ -90,6 +159,34 @@ public class Downloadable {
 
     private long expectedSize;
 
+    private DownloadPriority priority = DownloadPriority.NORMAL;
+
+    private String partialValidator;
+
+    private VerifiedFileIndex fileIndex;
+
+    private DownloadTransport transport = DownloadTransport.getDefault();
+
+    private AtomicFiles.SyncBatch syncBatch;
+
+    private Executor segmentExecutor;
+
+    private MirrorSet mirrors;
+
+    private volatile URL source;
+
+    private volatile boolean cancelled;
+
+    private final DigestSet expectedDigests = new DigestSet();
+
+    private boolean sha1Sidecar;
+
+    private boolean sidecarChecked;
+
+    private ObjectStore objectStore;
+
+    private final Set<HttpURLConnection> connections = Collections.newSetFromMap(new ConcurrentHashMap<HttpURLConnection, Boolean>());
+
     public Downloadable(final Proxy proxy, final URL remoteFile, final File localFile, final boolean forceDownload) {
         this.proxy = proxy;
         url = remoteFile;
@@ -98,66 +195,294 @@ public class Downloadable {
         monitor = new ProgressContainer();
     }
 
+    void abortConnection(final HttpURLConnection connection) {
+        connections.remove(connection);
+        transport.abort(connection);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        interrupt();
+    }
+
+    public void checkStopped() throws DownloadStoppedException {
+        if(isStopRequested())
+            throw new DownloadStoppedException("Download of " + target + " was " + (cancelled ? "cancelled" : "stopped"));
+    }
+
     public String download() throws IOException {
         String localMd5 = null;
+        checkStopped();
         numAttempts += 1;
 
         if(target.getParentFile() != null && !target.getParentFile().isDirectory())
             target.getParentFile().mkdirs();
-        if(!forceDownload && target.isFile())
-            localMd5 = getMD5(target);
-
         if(target.isFile() && !target.canWrite())
             throw new RuntimeException("Do not have write permissions for " + target + " - aborting!");
+
+        selectSource();
+        if(sha1Sidecar && !sidecarChecked && !expectedDigests.has(DigestSet.SHA1))
+            fetchSha1Sidecar();
+
+        final boolean verified = !expectedDigests.isEmpty();
+        if(!forceDownload && target.isFile())
+            if(verified) {
+                final Map<String, String> localDigests = getDigests(target, getDigestAlgorithms());
+                if(localDigests != null && expectedDigests.getMismatch(localDigests) == null) {
+                    storeObject(localDigests.get(DigestSet.SHA1));
+                    if(fileIndex != null)
+                        fileIndex.record(target, localDigests.get(DigestSet.MD5), localDigests.get(DigestSet.SHA1));
+                    return "Local file matched " + expectedDigests.getAlgorithms() + ", skipped download";
+                }
+            }
+            else
+                localMd5 = fileIndex != null ? fileIndex.getMD5(target) : getMD5(target);
+
+        if(!forceDownload && objectStore != null && objectStore.contains(expectedDigests.get(DigestSet.SHA1))) {
+            final Map<String, String> objectDigests = objectStore.materialize(target, expectedDigests.get(DigestSet.SHA1));
+            if(objectDigests != null) {
+                if(fileIndex != null)
+                    fileIndex.record(target, objectDigests.get(DigestSet.MD5), objectDigests.get(DigestSet.SHA1));
+                return "Linked from object store " + objectStore.getObjectFile(expectedDigests.get(DigestSet.SHA1));
+            }
+        }
+
+        final File partial = getPartialFile();
+        final boolean segmentedPartial = SegmentedDownload.getProgressFile(partial).isFile();
+        long resumeFrom = 0L;
+        if(!segmentedPartial)
+            if(partialValidator != null && partial.isFile())
+                resumeFrom = partial.length();
+            else
+                partial.delete();
+
+        final long started = System.nanoTime();
+        final long startedAt = monitor.getCurrent();
+        boolean served = false;
+        HttpURLConnection connection = null;
         try {
-            final HttpURLConnection connection = makeConnection(localMd5);
+            connection = makeConnection(localMd5, resumeFrom);
             final int status = connection.getResponseCode();
 
-            if(status == 304)
+            if(status == 304) {
+                discardPartial();
+                if(fileIndex != null)
+                    fileIndex.record(target, localMd5);
+                served = true;
                 return "Used own copy as it matched etag";
+            }
+            if(status == 416) {
+                discardPartial();
+                throw new RuntimeException("Server refused to resume " + partial + " from byte " + resumeFrom);
+            }
             if(status / 100 == 2) {
+                final boolean resumed = resumeFrom > 0L && status == 206 && getRangeStart(connection) == resumeFrom;
+                if(!resumed)
+                    resumeFrom = 0L;
+
+                final MultiDigest digest = new MultiDigest(getDigestAlgorithms());
+                if(resumed)
+                    digestFile(partial, digest);
+
+                partialValidator = connection.getHeaderField("ETag");
+                if(partialValidator == null)
+                    partialValidator = connection.getHeaderField("Last-Modified");
+
                 if(expectedSize == 0L)
-                    monitor.setTotal(connection.getContentLength());
+                    monitor.setTotal(resumeFrom + connection.getContentLength());
                 else
                     monitor.setTotal(expectedSize);
+                monitor.setCurrent(resumeFrom);
+
+                final long contentLength = connection.getContentLength();
+                final int segments = resumed || segmentExecutor == null ? 1 : SegmentedDownload.getSegmentCount(connection, contentLength);
+                long restored = 0L;
+                if(segments > 1) {
+                    final SegmentedDownload segmentedDownload = new SegmentedDownload(this, connection, partial, contentLength, segments);
+                    restored = segmentedDownload.getCompleted();
+                    monitor.setCurrent(restored);
+                    segmentedDownload.download(segmentExecutor);
+                    digestFile(partial, digest);
+                }
+                else {
+                    if(segmentedPartial)
+                        SegmentedDownload.getProgressFile(partial).delete();
+                    final InputStream inputStream = new MonitoringInputStream(connection.getInputStream(), this);
+                    final FileChannel channel = new FileOutputStream(partial, resumed).getChannel();
+                    copyAndDigest(inputStream, channel, digest);
+
+                    if(contentLength >= 0L && partial.length() < resumeFrom + contentLength)
+                        throw new IOException("Connection closed after " + partial.length() + " of " + (resumeFrom + contentLength) + " bytes");
+                }
+                final Map<String, String> digests = digest.digest();
+                final String md5 = digests.get(DigestSet.MD5);
+                final String method = restored > 0L ? "Resumed " + segments + " segments with " + restored + " bytes on disk" : segments > 1 ? "Downloaded in " + segments + " segments" : resumed ? "Resumed from byte " + resumeFrom : "Downloaded successfully";
+
+                if(verified) {
+                    final String mismatch = expectedDigests.getMismatch(digests);
+                    if(mismatch != null) {
+                        discardPartial();
+                        throw new RuntimeException("Downloaded file failed verification (" + mismatch + ")");
+                    }
+                    promotePartial();
+                    storeObject(digests.get(DigestSet.SHA1));
+                    if(fileIndex != null)
+                        fileIndex.record(target, md5, digests.get(DigestSet.SHA1));
+                    served = true;
+                    return method + " and " + expectedDigests.getAlgorithms() + " matched";
+                }
 
-                final InputStream inputStream = new MonitoringInputStream(connection.getInputStream(), monitor);
-                final FileOutputStream outputStream = new FileOutputStream(target);
-                final String md5 = copyAndDigest(inputStream, outputStream);
                 final String etag = getEtag(connection);
-
-                if(etag.contains("-"))
+                if(etag.contains("-")) {
+                    promotePartial();
+                    if(fileIndex != null)
+                        fileIndex.invalidate(target);
+                    served = true;
                     return "Didn't have etag so assuming our copy is good";
-                if(etag.equalsIgnoreCase(md5))
-                    return "Downloaded successfully and etag matched";
+                }
+                if(etag.equalsIgnoreCase(md5)) {
+                    promotePartial();
+                    storeObject(digests.get(DigestSet.SHA1));
+                    if(fileIndex != null)
+                        fileIndex.record(target, md5, digests.get(DigestSet.SHA1));
+                    served = true;
+                    return method + " and etag matched";
+                }
+                discardPartial();
                 throw new RuntimeException(String.format("E-tag did not match downloaded MD5 (ETag was %s, downloaded %s)", new Object[] { etag, md5 }));
             }
-            if(target.isFile())
+            if(target.isFile() && !verified)
                 return "Couldn't connect to server (responded with " + status + ") but have local file, assuming it's good";
             throw new RuntimeException("Server responded with " + status);
         }
         catch(final IOException e) {
-            if(target.isFile())
+            checkStopped();
+            if(target.isFile() && !verified)
                 return "Couldn't connect to server (" + e.getClass().getSimpleName() + ": '" + e.getMessage() + "') but have local file, assuming it's good";
             throw e;
         }
         catch(final NoSuchAlgorithmException e) {
-            throw new RuntimeException("Missing Digest.MD5", e);
+            throw new RuntimeException("Missing digest algorithm", e);
         }
+        finally {
+            if(connection != null)
+                releaseConnection(connection);
+            if(mirrors != null)
+                if(served)
+                    mirrors.onSuccess(source, monitor.getCurrent() - startedAt, System.nanoTime() - started);
+                else if(!isStopRequested())
+                    mirrors.onFailure(source);
+        }
+    }
+
+    private void discardPartial() {
+        partialValidator = null;
+        getPartialFile().delete();
+        SegmentedDownload.getProgressFile(getPartialFile()).delete();
+    }
+
+    private void promotePartial() throws IOException {
+        partialValidator = null;
+        if(objectStore != null)
+            objectStore.release(target);
+        SegmentedDownload.getProgressFile(getPartialFile()).delete();
+        AtomicFiles.replace(getPartialFile(), target, syncBatch);
+    }
+
+    private void storeObject(final String sha1) {
+        if(objectStore == null || sha1 == null)
+            return;
+        try {
+            objectStore.ingest(target, sha1);
+        }
+        catch(final IOException e) {
+            Launcher.getInstance().println("Couldn't add " + target + " to object store", e);
+        }
+    }
+
+    private void fetchSha1Sidecar() {
+        HttpURLConnection connection = null;
+        InputStream inputStream = null;
+        try {
+            connection = transport.open(new URL(getUrl() + ".sha1"), proxy, this);
+            connections.add(connection);
+            connection.setUseCaches(false);
+            if(connection.getResponseCode() == 200) {
+                inputStream = connection.getInputStream();
+                final byte[] buffer = new byte[256];
+                int length = 0;
+                int read;
+                while(length < buffer.length && (read = inputStream.read(buffer, length, buffer.length - length)) >= 0)
+                    length += read;
+
+                final String[] parts = new String(buffer, 0, length, "US-ASCII").trim().split("\\s+");
+                if(parts.length > 0 && parts[0].matches("[0-9a-fA-F]{40}"))
+                    expectedDigests.add(DigestSet.SHA1, parts[0]);
+            }
+            sidecarChecked = true;
+        }
+        catch(final IOException ignored) {
+        }
+        finally {
+            closeSilently(inputStream);
+            if(connection != null)
+                releaseConnection(connection);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if(this == other)
+            return true;
+        if(!(other instanceof Downloadable))
+            return false;
+        return target.getAbsoluteFile().equals(((Downloadable) other).target.getAbsoluteFile());
+    }
+
+    private Collection<String> getDigestAlgorithms() {
+        final Set<String> algorithms = new LinkedHashSet<String>(expectedDigests.getAlgorithms());
+        algorithms.add(DigestSet.MD5);
+        if(objectStore != null)
+            algorithms.add(DigestSet.SHA1);
+        return algorithms;
+    }
+
+    public DigestSet getExpectedDigests() {
+        return expectedDigests;
     }
 
     public long getExpectedSize() {
         return expectedSize;
     }
 
+    public VerifiedFileIndex getFileIndex() {
+        return fileIndex;
+    }
+
+    public MirrorSet getMirrors() {
+        return mirrors;
+    }
+
     public ProgressContainer getMonitor() {
         return monitor;
     }
 
+    public ObjectStore getObjectStore() {
+        return objectStore;
+    }
+
     public int getNumAttempts() {
         return numAttempts;
     }
 
+    public File getPartialFile() {
+        return new File(target.getPath() + ".part");
+    }
+
+    public DownloadPriority getPriority() {
+        return priority;
+    }
+
     public Proxy getProxy() {
         return proxy;
     }
@@ -166,12 +491,63 @@ public class Downloadable {
         return target;
     }
 
-    public URL getUrl() {
+    public DownloadTransport getTransport() {
+        return transport;
+    }
+
+    public URL getOriginalUrl() {
         return url;
     }
 
+    public URL getUrl() {
+        final URL current = source;
+        return current != null ? current : url;
+    }
+
+    static long getRangeStart(final HttpURLConnection connection) {
+        final String range = connection.getHeaderField("Content-Range");
+        if(range == null || !range.startsWith("bytes "))
+            return -1L;
+
+        final int dash = range.indexOf('-');
+        if(dash < 0)
+            return -1L;
+        try {
+            return Long.parseLong(range.substring(6, dash).trim());
+        }
+        catch(final NumberFormatException ignored) {
+            return -1L;
+        }
+    }
+
+    void interrupt() {
+        for(final HttpURLConnection connection : connections)
+            connection.disconnect();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isStopRequested() {
+        if(cancelled)
+            return true;
+        final DownloadJob job = monitor.getJob();
+        return job != null && job.isStopRequested();
+    }
+
+    @Override
+    public int hashCode() {
+        return target.getAbsoluteFile().hashCode();
+    }
+
     protected HttpURLConnection makeConnection(final String localMd5) throws IOException {
-        final HttpURLConnection connection = (HttpURLConnection) url.openConnection(proxy);
+        return makeConnection(localMd5, 0L);
+    }
+
+    protected HttpURLConnection makeConnection(final String localMd5, final long resumeFrom) throws IOException {
+        final HttpURLConnection connection = transport.open(getUrl(), proxy, this);
+        connections.add(connection);
 
         connection.setUseCaches(false);
         connection.setDefaultUseCaches(false);
@@ -180,16 +556,93 @@ public class Downloadable {
         connection.setRequestProperty("Pragma", "no-cache");
         if(localMd5 != null)
             connection.setRequestProperty("If-None-Match", localMd5);
+        if(resumeFrom > 0L) {
+            connection.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+            connection.setRequestProperty("If-Range", partialValidator);
+        }
+        try {
+            connection.connect();
+        }
+        catch(final IOException e) {
+            abortConnection(connection);
+            throw e;
+        }
+
+        return connection;
+    }
+
+    protected HttpURLConnection makeRangeConnection(final long start, final long end, final String validator) throws IOException {
+        final HttpURLConnection connection = transport.open(getUrl(), proxy, this);
+        connections.add(connection);
 
-        connection.connect();
+        connection.setUseCaches(false);
+        connection.setDefaultUseCaches(false);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        if(validator != null)
+            connection.setRequestProperty("If-Range", validator);
+        try {
+            connection.connect();
+        }
+        catch(final IOException e) {
+            abortConnection(connection);
+            throw e;
+        }
 
         return connection;
     }
 
+    void refundAttempt() {
+        if(numAttempts > 0)
+            numAttempts--;
+    }
+
+    void releaseConnection(final HttpURLConnection connection) {
+        connections.remove(connection);
+        transport.release(connection);
+    }
+
+    public URL selectSource() {
+        final URL selected = mirrors != null ? mirrors.select(url) : url;
+        source = selected;
+        return selected;
+    }
+
     public void setExpectedSize(final long expectedSize) {
         this.expectedSize = expectedSize;
     }
 
+    public void setFileIndex(final VerifiedFileIndex fileIndex) {
+        this.fileIndex = fileIndex;
+    }
+
+    public void setMirrors(final MirrorSet mirrors) {
+        this.mirrors = mirrors;
+    }
+
+    public void setObjectStore(final ObjectStore objectStore) {
+        this.objectStore = objectStore;
+    }
+
+    public void setPriority(final DownloadPriority priority) {
+        this.priority = priority;
+    }
+
+    public void setSegmentExecutor(final Executor segmentExecutor) {
+        this.segmentExecutor = segmentExecutor;
+    }
+
+    public void setSha1Sidecar(final boolean sha1Sidecar) {
+        this.sha1Sidecar = sha1Sidecar;
+    }
+
+    public void setSyncBatch(final AtomicFiles.SyncBatch syncBatch) {
+        this.syncBatch = syncBatch;
+    }
+
+    public void setTransport(final DownloadTransport transport) {
+        this.transport = transport;
+    }
+
     public boolean shouldIgnoreLocal() {
         return forceDownload;
     }
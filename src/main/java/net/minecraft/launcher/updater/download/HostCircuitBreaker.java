@@ -0,0 +1,67 @@
+package net.minecraft.launcher.updater.download;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HostCircuitBreaker {
+    private static class HostState {
+        private int consecutiveFailures;
+        private int trips;
+        private long openUntil;
+    }
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long BASE_COOLDOWN_MILLIS = 5000L;
+    private static final long MAX_COOLDOWN_MILLIS = 60000L;
+    private static HostCircuitBreaker defaultBreaker;
+
+    public static synchronized HostCircuitBreaker getDefault() {
+        if(defaultBreaker == null)
+            defaultBreaker = new HostCircuitBreaker();
+        return defaultBreaker;
+    }
+
+    private final Map<String, HostState> hosts = new HashMap<String, HostState>();
+
+    public synchronized long getBlockedMillis(final String host) {
+        final HostState state = hosts.get(host);
+        if(state == null)
+            return 0L;
+
+        final long now = System.currentTimeMillis();
+        if(state.openUntil > now)
+            return state.openUntil - now;
+        if(state.consecutiveFailures >= FAILURE_THRESHOLD)
+            state.openUntil = now + getCooldown(state.trips);
+        return 0L;
+    }
+
+    private long getCooldown(final int trips) {
+        return Math.min(MAX_COOLDOWN_MILLIS, BASE_COOLDOWN_MILLIS << Math.max(0, Math.min(trips - 1, 16)));
+    }
+
+    public synchronized boolean isOpen(final String host) {
+        final HostState state = hosts.get(host);
+        return state != null && state.openUntil > System.currentTimeMillis();
+    }
+
+    public synchronized boolean onFailure(final String host) {
+        HostState state = hosts.get(host);
+        if(state == null) {
+            state = new HostState();
+            hosts.put(host, state);
+        }
+
+        state.consecutiveFailures++;
+        if(state.consecutiveFailures < FAILURE_THRESHOLD)
+            return false;
+
+        state.trips++;
+        state.openUntil = System.currentTimeMillis() + getCooldown(state.trips);
+        return true;
+    }
+
+    public synchronized void onSuccess(final String host) {
+        hosts.remove(host);
+    }
+}
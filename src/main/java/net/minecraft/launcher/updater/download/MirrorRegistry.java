@@ -0,0 +1,57 @@
+package net.minecraft.launcher.updater.download;
+
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.minecraft.launcher.Launcher;
+import net.minecraft.launcher.LauncherConstants;
+
+public class MirrorRegistry {
+    private static final long PROBE_INTERVAL_MILLIS = 600000L;
+    private static MirrorRegistry defaultRegistry;
+
+    public static synchronized MirrorRegistry getDefault() {
+        if(defaultRegistry == null) {
+            defaultRegistry = new MirrorRegistry();
+            defaultRegistry.register(LauncherConstants.URL_DOWNLOAD_BASE, System.getProperty("minecraft.mirrors.download"));
+            defaultRegistry.register(LauncherConstants.URL_RESOURCE_BASE, System.getProperty("minecraft.mirrors.resources"));
+            defaultRegistry.register(LauncherConstants.LIBRARY_DOWNLOAD_BASE, System.getProperty("minecraft.mirrors.libraries"));
+        }
+        return defaultRegistry;
+    }
+
+    private final List<MirrorSet> mirrorSets = new CopyOnWriteArrayList<MirrorSet>();
+
+    public MirrorSet getMirrors(final URL url) {
+        for(final MirrorSet mirrorSet : mirrorSets)
+            if(mirrorSet.matches(url))
+                return mirrorSet;
+        return null;
+    }
+
+    public void probe(final Proxy proxy) {
+        for(final MirrorSet mirrorSet : mirrorSets)
+            if(mirrorSet.size() > 1 && System.currentTimeMillis() - mirrorSet.getLastProbe() >= PROBE_INTERVAL_MILLIS) {
+                mirrorSet.probe(proxy, DownloadTransport.getDefault());
+                Launcher.getInstance().println("Probed mirrors for " + mirrorSet.getUpstream() + ": " + mirrorSet);
+            }
+    }
+
+    public MirrorSet register(final String upstream, final List<String> mirrors) {
+        final MirrorSet mirrorSet = new MirrorSet(upstream, mirrors);
+        mirrorSets.add(0, mirrorSet);
+        return mirrorSet;
+    }
+
+    public MirrorSet register(final String upstream, final String mirrors) {
+        final List<String> baseUrls = new ArrayList<String>();
+        if(mirrors != null)
+            for(final String baseUrl : mirrors.split(","))
+                if(baseUrl.trim().length() > 0)
+                    baseUrls.add(baseUrl.trim());
+        return register(upstream, baseUrls);
+    }
+}
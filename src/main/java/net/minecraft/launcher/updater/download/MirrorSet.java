@@ -0,0 +1,209 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MirrorSet {
+    private static class Mirror {
+        private final String baseUrl;
+        private double latencyMillis = -1.0D;
+        private double bytesPerMilli = -1.0D;
+        private int failures;
+        private long blockedUntil;
+
+        public Mirror(final String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public double getCost() {
+            if(bytesPerMilli <= 0.0D)
+                return latencyMillis;
+            return latencyMillis + REFERENCE_BYTES / bytesPerMilli;
+        }
+
+        public boolean isHealthy(final long now) {
+            return blockedUntil <= now;
+        }
+
+        public boolean isMeasured() {
+            return latencyMillis >= 0.0D;
+        }
+    }
+
+    private static final double REFERENCE_BYTES = 1048576.0D;
+    private static final double SMOOTHING = 0.3D;
+    private static final double PREFERENCE_TOLERANCE = 1.25D;
+    private static final long MIN_THROUGHPUT_SAMPLE = 65536L;
+    private static final long BASE_COOLDOWN_MILLIS = 5000L;
+    private static final long MAX_COOLDOWN_MILLIS = 60000L;
+
+    private final String upstream;
+    private final List<Mirror> mirrors = new ArrayList<Mirror>();
+    private long lastProbe;
+
+    public MirrorSet(final String upstream, final List<String> preferred) {
+        this.upstream = upstream;
+        for(final String baseUrl : preferred)
+            if(!baseUrl.equals(upstream))
+                mirrors.add(new Mirror(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/"));
+        mirrors.add(new Mirror(upstream));
+    }
+
+    private Mirror find(final URL source) {
+        final String url = source.toString();
+        for(final Mirror mirror : mirrors)
+            if(url.startsWith(mirror.baseUrl))
+                return mirror;
+        return null;
+    }
+
+    public synchronized List<String> getBaseUrls() {
+        final List<String> result = new ArrayList<String>();
+        for(final Mirror mirror : mirrors)
+            result.add(mirror.baseUrl);
+        return Collections.unmodifiableList(result);
+    }
+
+    public synchronized long getLastProbe() {
+        return lastProbe;
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    public boolean matches(final URL url) {
+        return url.toString().startsWith(upstream);
+    }
+
+    public synchronized void onFailure(final URL source) {
+        final Mirror mirror = find(source);
+        if(mirror == null)
+            return;
+
+        mirror.failures++;
+        mirror.blockedUntil = System.currentTimeMillis() + Math.min(MAX_COOLDOWN_MILLIS, BASE_COOLDOWN_MILLIS << Math.min(mirror.failures - 1, 16));
+    }
+
+    public synchronized void onSuccess(final URL source, final long bytes, final long elapsedNanos) {
+        final Mirror mirror = find(source);
+        if(mirror == null)
+            return;
+
+        mirror.failures = 0;
+        mirror.blockedUntil = 0L;
+        if(bytes >= MIN_THROUGHPUT_SAMPLE && elapsedNanos > 0L) {
+            final double sample = bytes * 1000000.0D / elapsedNanos;
+            mirror.bytesPerMilli = mirror.bytesPerMilli < 0.0D ? sample : mirror.bytesPerMilli + SMOOTHING * (sample - mirror.bytesPerMilli);
+        }
+    }
+
+    public void probe(final Proxy proxy, final DownloadTransport transport) {
+        final List<String> baseUrls = getBaseUrls();
+        for(final String baseUrl : baseUrls) {
+            HttpURLConnection connection = null;
+            final long started = System.nanoTime();
+            try {
+                connection = transport.open(new URL(baseUrl), proxy);
+                connection.setRequestMethod("HEAD");
+                connection.setUseCaches(false);
+                final int status = connection.getResponseCode();
+                final double latency = (System.nanoTime() - started) / 1000000.0D;
+
+                if(status >= 500)
+                    onProbeFailure(baseUrl);
+                else
+                    onProbeSuccess(baseUrl, latency);
+            }
+            catch(final IOException e) {
+                onProbeFailure(baseUrl);
+            }
+            finally {
+                if(connection != null)
+                    transport.release(connection);
+            }
+        }
+
+        synchronized(this) {
+            lastProbe = System.currentTimeMillis();
+        }
+    }
+
+    private void onProbeFailure(final String baseUrl) {
+        try {
+            onFailure(new URL(baseUrl));
+        }
+        catch(final MalformedURLException ignored) {
+        }
+    }
+
+    private synchronized void onProbeSuccess(final String baseUrl, final double latency) {
+        for(final Mirror mirror : mirrors)
+            if(mirror.baseUrl.equals(baseUrl)) {
+                mirror.latencyMillis = mirror.latencyMillis < 0.0D ? latency : mirror.latencyMillis + SMOOTHING * (latency - mirror.latencyMillis);
+                mirror.failures = 0;
+                mirror.blockedUntil = 0L;
+            }
+    }
+
+    public URL select(final URL url) {
+        if(!matches(url))
+            return url;
+
+        final Mirror mirror;
+        synchronized(this) {
+            mirror = selectMirror(System.currentTimeMillis());
+        }
+        if(mirror.baseUrl.equals(upstream))
+            return url;
+
+        try {
+            return new URL(mirror.baseUrl + url.toString().substring(upstream.length()));
+        }
+        catch(final MalformedURLException e) {
+            return url;
+        }
+    }
+
+    private Mirror selectMirror(final long now) {
+        double bestCost = Double.MAX_VALUE;
+        for(final Mirror mirror : mirrors)
+            if(mirror.isHealthy(now) && mirror.isMeasured())
+                bestCost = Math.min(bestCost, mirror.getCost());
+
+        Mirror soonest = null;
+        for(final Mirror mirror : mirrors) {
+            if(mirror.isHealthy(now) && (bestCost == Double.MAX_VALUE || mirror.isMeasured() && mirror.getCost() <= bestCost * PREFERENCE_TOLERANCE))
+                return mirror;
+            if(soonest == null || mirror.blockedUntil < soonest.blockedUntil)
+                soonest = mirror;
+        }
+        return soonest;
+    }
+
+    public int size() {
+        return mirrors.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder result = new StringBuilder();
+        final long now = System.currentTimeMillis();
+        for(final Mirror mirror : mirrors) {
+            if(result.length() > 0)
+                result.append(", ");
+            result.append(mirror.baseUrl);
+            if(!mirror.isHealthy(now))
+                result.append(" (down)");
+            else if(mirror.isMeasured())
+                result.append(" (").append(Math.round(mirror.getCost())).append(" ms/MiB)");
+        }
+        return "MirrorSet{" + result + "}";
+    }
+}
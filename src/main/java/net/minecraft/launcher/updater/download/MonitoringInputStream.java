@@ -5,49 +5,72 @@ import java.io.IOException;
 import java.io.InputStream;
 
 public class MonitoringInputStream extends FilterInputStream {
+    private final Downloadable downloadable;
     private final ProgressContainer monitor;
+    private final BandwidthLimiter globalLimiter = BandwidthLimiter.getGlobal();
 
-    protected MonitoringInputStream(final InputStream in, final ProgressContainer monitor) {
+    protected MonitoringInputStream(final InputStream in, final Downloadable downloadable) {
         super(in);
-        this.monitor = monitor;
+        this.downloadable = downloadable;
+        monitor = downloadable.getMonitor();
+    }
+
+    private void throttle(final long bytes) throws IOException {
+        globalLimiter.acquire(bytes);
+
+        final DownloadJob job = monitor.getJob();
+        if(job != null)
+            job.getBandwidthLimiter().acquire(bytes);
     }
 
     @Override
     public int read() throws IOException {
+        downloadable.checkStopped();
         final int result = in.read();
 
-        if(result >= 0)
+        if(result >= 0) {
             monitor.addProgress(1L);
+            throttle(1L);
+        }
 
         return result;
     }
 
     @Override
     public int read(final byte[] buffer) throws IOException {
+        downloadable.checkStopped();
         final int size = in.read(buffer);
 
-        if(size >= 0)
+        if(size > 0) {
             monitor.addProgress(size);
+            throttle(size);
+        }
 
         return size;
     }
 
     @Override
     public int read(final byte[] buffer, final int off, final int len) throws IOException {
+        downloadable.checkStopped();
         final int size = in.read(buffer, off, len);
 
-        if(size > 0)
+        if(size > 0) {
             monitor.addProgress(size);
+            throttle(size);
+        }
 
         return size;
     }
 
     @Override
     public long skip(final long size) throws IOException {
+        downloadable.checkStopped();
         final long skipped = super.skip(size);
 
-        if(skipped > 0L)
+        if(skipped > 0L) {
             monitor.addProgress(skipped);
+            throttle(skipped);
+        }
 
         return skipped;
     }
@@ -0,0 +1,48 @@
+package net.minecraft.launcher.updater.download;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MultiDigest {
+    public static String toHex(final MessageDigest digest) {
+        return String.format("%1$0" + digest.getDigestLength() * 2 + "x", new Object[] { new BigInteger(1, digest.digest()) });
+    }
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<String, MessageDigest>();
+
+    public MultiDigest(final Collection<String> algorithms) throws NoSuchAlgorithmException {
+        for(final String algorithm : algorithms)
+            if(!digests.containsKey(algorithm))
+                digests.put(algorithm, MessageDigest.getInstance(algorithm));
+    }
+
+    public MultiDigest(final String... algorithms) throws NoSuchAlgorithmException {
+        this(Arrays.asList(algorithms));
+    }
+
+    public Map<String, String> digest() {
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for(final Map.Entry<String, MessageDigest> entry : digests.entrySet())
+            result.put(entry.getKey(), toHex(entry.getValue()));
+        return result;
+    }
+
+    public void update(final byte[] buffer, final int offset, final int length) {
+        for(final MessageDigest digest : digests.values())
+            digest.update(buffer, offset, length);
+    }
+
+    public void update(final ByteBuffer buffer) {
+        final int position = buffer.position();
+        for(final MessageDigest digest : digests.values()) {
+            buffer.position(position);
+            digest.update(buffer);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.launcher.AtomicFiles;
+import net.minecraft.launcher.Launcher;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+public class ObjectStore {
+    private static class RawReferences {
+        private Map<String, List<String>> objects = new HashMap<String, List<String>>();
+    }
+
+    private final File root;
+    private final File referencesFile;
+    private final File lockFile;
+    private final Gson gson = new GsonBuilder().create();
+    private final Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+    private final Map<String, String> owners = new HashMap<String, String>();
+    private final Map<String, String> pending = new HashMap<String, String>();
+    private boolean loaded;
+
+    public ObjectStore(final File root) {
+        this.root = root;
+        referencesFile = new File(root, "references.json");
+        lockFile = new File(root, "references.lock");
+    }
+
+    private synchronized void addReference(final File file, final String hash) {
+        ensureLoaded();
+
+        final String path = file.getAbsolutePath();
+        if(setOwner(path, hash))
+            pending.put(path, hash);
+    }
+
+    public boolean contains(final String hash) {
+        return hash != null && getObjectFile(hash).isFile();
+    }
+
+    private void copy(final File source, final File target) throws IOException {
+        final File temp = File.createTempFile(target.getName() + ".", ".tmp", target.getAbsoluteFile().getParentFile());
+        try {
+            Files.copy(source.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            AtomicFiles.replace(temp, target);
+        }
+        finally {
+            if(temp.exists())
+                temp.delete();
+        }
+    }
+
+    private void ensureLoaded() {
+        if(loaded)
+            return;
+        loaded = true;
+
+        read();
+    }
+
+    public File getObjectFile(final String hash) {
+        final String key = hash.toLowerCase();
+        return new File(root, key.substring(0, 2) + "/" + key);
+    }
+
+    public synchronized Map<String, Set<String>> getReferences() {
+        reload();
+
+        final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for(final Map.Entry<String, Set<String>> entry : references.entrySet())
+            result.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<String>(entry.getValue())));
+        return result;
+    }
+
+    public synchronized int getReferenceCount(final String hash) {
+        ensureLoaded();
+
+        final Set<String> paths = references.get(hash.toLowerCase());
+        return paths == null ? 0 : paths.size();
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public boolean ingest(final File file, final String hash) throws IOException {
+        if(hash == null || !file.isFile())
+            return false;
+
+        final String key = hash.toLowerCase();
+        final File object = getObjectFile(key);
+        boolean shared = false;
+
+        if(!object.isFile()) {
+            object.getParentFile().mkdirs();
+            try {
+                Files.createLink(object.toPath(), file.toPath());
+            }
+            catch(final FileAlreadyExistsException e) {
+                shared = true;
+            }
+            catch(final IOException e) {
+                copy(file, object);
+            }
+            catch(final UnsupportedOperationException e) {
+                copy(file, object);
+            }
+        }
+        else
+            shared = true;
+
+        if(shared && !Files.isSameFile(object.toPath(), file.toPath()))
+            if(object.length() == file.length() && verify(key) != null)
+                link(object, file);
+            else {
+                copy(file, object);
+                shared = false;
+            }
+
+        addReference(file, key);
+        return shared;
+    }
+
+    public synchronized boolean isReferenced(final File file) {
+        ensureLoaded();
+
+        return owners.containsKey(file.getAbsolutePath());
+    }
+
+    private void link(final File object, final File target) throws IOException {
+        final File parent = target.getAbsoluteFile().getParentFile();
+        if(parent != null && !parent.isDirectory())
+            parent.mkdirs();
+
+        final File temp = new File(target.getPath() + ".link");
+        temp.delete();
+        try {
+            Files.createLink(temp.toPath(), object.toPath());
+            AtomicFiles.move(temp, target);
+        }
+        catch(final IOException e) {
+            copy(object, target);
+        }
+        catch(final UnsupportedOperationException e) {
+            copy(object, target);
+        }
+        finally {
+            if(temp.exists())
+                temp.delete();
+        }
+    }
+
+    public Map<String, String> materialize(final File target, final String hash) throws IOException {
+        if(!contains(hash))
+            return null;
+
+        final String key = hash.toLowerCase();
+        final Map<String, String> digests = verify(key);
+        if(digests == null)
+            return null;
+
+        link(getObjectFile(key), target);
+        addReference(target, key);
+        return digests;
+    }
+
+    private boolean read() {
+        references.clear();
+        owners.clear();
+
+        if(!referencesFile.isFile())
+            return true;
+        try {
+            final RawReferences raw = gson.fromJson(FileUtils.readFileToString(referencesFile), RawReferences.class);
+            if(raw != null && raw.objects != null)
+                for(final Map.Entry<String, List<String>> entry : raw.objects.entrySet())
+                    if(entry.getKey() != null && entry.getValue() != null) {
+                        references.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+                        for(final String path : entry.getValue())
+                            owners.put(path, entry.getKey());
+                    }
+        }
+        catch(final IOException e) {
+            Launcher.getInstance().println("Couldn't load object store references " + referencesFile, e);
+            return false;
+        }
+        catch(final JsonParseException e) {
+            Launcher.getInstance().println("Ignoring corrupt object store references " + referencesFile, e);
+        }
+        return true;
+    }
+
+    private boolean reload() {
+        loaded = true;
+        final boolean read = read();
+        for(final Map.Entry<String, String> entry : pending.entrySet())
+            setOwner(entry.getKey(), entry.getValue());
+        return read;
+    }
+
+    public synchronized void release(final File file) {
+        ensureLoaded();
+
+        final String path = file.getAbsolutePath();
+        if(setOwner(path, null))
+            pending.put(path, null);
+    }
+
+    private void removeReference(final String path, final String hash) {
+        final Set<String> paths = references.get(hash);
+        if(paths == null)
+            return;
+
+        paths.remove(path);
+        if(paths.isEmpty())
+            references.remove(hash);
+    }
+
+    public synchronized void save() throws IOException {
+        if(pending.isEmpty())
+            return;
+
+        root.mkdirs();
+        final RandomAccessFile lock = new RandomAccessFile(lockFile, "rw");
+        try {
+            final FileLock fileLock = lock.getChannel().lock();
+            try {
+                if(!reload())
+                    throw new IOException("Couldn't merge with the references saved in " + referencesFile);
+
+                final RawReferences raw = new RawReferences();
+                for(final Map.Entry<String, Set<String>> entry : references.entrySet())
+                    raw.objects.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+
+                AtomicFiles.writeString(referencesFile, gson.toJson(raw));
+                pending.clear();
+            }
+            finally {
+                fileLock.release();
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(lock);
+        }
+    }
+
+    private boolean setOwner(final String path, final String hash) {
+        final String previous = hash == null ? owners.remove(path) : owners.put(path, hash);
+        if(hash == null ? previous == null : hash.equals(previous))
+            return false;
+        if(previous != null)
+            removeReference(path, previous);
+        if(hash == null)
+            return true;
+
+        Set<String> paths = references.get(hash);
+        if(paths == null) {
+            paths = new HashSet<String>();
+            references.put(hash, paths);
+        }
+        paths.add(path);
+        return true;
+    }
+
+    private Map<String, String> verify(final String key) {
+        final File object = getObjectFile(key);
+        final Map<String, String> digests = Downloadable.getDigests(object, Arrays.asList(DigestSet.MD5, DigestSet.SHA1));
+        if(digests != null && key.equalsIgnoreCase(digests.get(DigestSet.SHA1)))
+            return digests;
+
+        Launcher.getInstance().println("Evicting corrupt object " + object + " from object store");
+        object.delete();
+        return null;
+    }
+}
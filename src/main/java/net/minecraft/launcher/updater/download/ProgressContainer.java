@@ -1,12 +1,34 @@
 package net.minecraft.launcher.updater.download;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public class ProgressContainer {
-    private long total;
-    private long current;
-    private DownloadJob job;
+    private final List<ProgressContainer> followers = new CopyOnWriteArrayList<ProgressContainer>();
+    private volatile long total;
+    private volatile long current;
+    private volatile DownloadJob job;
 
     public void addProgress(final long amount) {
-        setCurrent(getCurrent() + amount);
+        synchronized(this) {
+            current += amount;
+            if(current > total) {
+                if(job != null)
+                    job.addTotal(current - total);
+                total = current;
+            }
+        }
+        if(job != null)
+            job.addCurrent(amount);
+
+        for(final ProgressContainer follower : followers)
+            follower.addProgress(amount);
+    }
+
+    public void follow(final ProgressContainer leader) {
+        setTotal(leader.getTotal());
+        setCurrent(leader.getCurrent());
+        leader.followers.add(this);
     }
 
     public long getCurrent() {
@@ -28,22 +50,33 @@ public class ProgressContainer {
     }
 
     public void setCurrent(final long current) {
-        this.current = current;
-        if(current > total)
-            total = current;
-        if(job != null)
-            job.updateProgress();
+        addProgress(current - this.current);
     }
 
     public void setJob(final DownloadJob job) {
+        if(this.job != null) {
+            this.job.addCurrent(-current);
+            this.job.addTotal(-total);
+        }
         this.job = job;
-        if(job != null)
-            job.updateProgress();
+        if(job != null) {
+            job.addCurrent(current);
+            job.addTotal(total);
+        }
     }
 
     public void setTotal(final long total) {
-        this.total = total;
-        if(job != null)
-            job.updateProgress();
+        synchronized(this) {
+            if(job != null)
+                job.addTotal(total - this.total);
+            this.total = total;
+        }
+
+        for(final ProgressContainer follower : followers)
+            follower.setTotal(total);
+    }
+
+    public void unfollow(final ProgressContainer leader) {
+        leader.followers.remove(this);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package net.minecraft.launcher.updater.download;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class ProgressTicker {
+    public static final long DEFAULT_INTERVAL_MILLIS = 50L;
+    private static ProgressTicker defaultTicker;
+
+    public static synchronized ProgressTicker getDefault() {
+        if(defaultTicker == null)
+            defaultTicker = new ProgressTicker(DEFAULT_INTERVAL_MILLIS);
+        return defaultTicker;
+    }
+
+    private final long intervalMillis;
+    private final Set<DownloadJob> jobs = new CopyOnWriteArraySet<DownloadJob>();
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> task;
+
+    public ProgressTicker(final long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Download progress ticker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public synchronized void register(final DownloadJob job) {
+        jobs.add(job);
+        if(task == null)
+            task = scheduler.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    tick();
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        for(final DownloadJob job : jobs)
+            job.publishProgress();
+    }
+
+    public synchronized void unregister(final DownloadJob job) {
+        jobs.remove(job);
+        if(jobs.isEmpty() && task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.minecraft.launcher.updater.download;
+
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+public class RetryScheduler {
+    private static class PendingRetry implements Delayed {
+        private final Downloadable downloadable;
+        private final long readyAt;
+
+        public PendingRetry(final Downloadable downloadable, final long delayMillis) {
+            this.downloadable = downloadable;
+            readyAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        public int compareTo(final Delayed other) {
+            final long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0L ? -1 : diff > 0L ? 1 : 0;
+        }
+
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final long BASE_DELAY_MILLIS = 500L;
+    private static final long MAX_DELAY_MILLIS = 30000L;
+    private final DelayQueue<PendingRetry> pending = new DelayQueue<PendingRetry>();
+    private final Random random = new Random();
+
+    public void defer(final Downloadable downloadable, final long delayMillis) {
+        pending.add(new PendingRetry(downloadable, delayMillis));
+    }
+
+    public int drainTo(final DownloadQueue queue) {
+        int drained = 0;
+        PendingRetry retry;
+        while((retry = pending.poll()) != null) {
+            queue.add(retry.downloadable);
+            drained++;
+        }
+        return drained;
+    }
+
+    public long getBackoffMillis(final int attempts) {
+        final int exponent = Math.max(0, Math.min(attempts - 1, 16));
+        final long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << exponent);
+        final double jitter;
+        synchronized(random) {
+            jitter = random.nextDouble();
+        }
+        return ceiling / 2 + (long) (ceiling / 2 * jitter);
+    }
+
+    public long getNextDelayMillis() {
+        final PendingRetry next = pending.peek();
+        if(next == null)
+            return Long.MAX_VALUE;
+        return Math.max(0L, next.getDelay(TimeUnit.MILLISECONDS));
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public long schedule(final Downloadable downloadable) {
+        final long delay = getBackoffMillis(downloadable.getNumAttempts());
+        defer(downloadable, delay);
+        return delay;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,268 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.minecraft.launcher.AtomicFiles;
+import net.minecraft.launcher.Launcher;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+public class SegmentedDownload {
+    private static class Progress {
+        private String validator;
+        private long length;
+        private long[] offsets;
+    }
+
+    public static final long DEFAULT_THRESHOLD = Long.getLong("minecraft.download.segmentThreshold", 16777216L).longValue();
+    public static final int DEFAULT_SEGMENTS = Integer.getInteger("minecraft.download.segments", 4).intValue();
+    private static final long MIN_SEGMENT_SIZE = 1048576L;
+    private static final int BUFFER_SIZE = 65536;
+
+    public static File getProgressFile(final File file) {
+        return new File(file.getPath() + ".segments");
+    }
+
+    public static int getSegmentCount(final HttpURLConnection connection, final long length) {
+        if(DEFAULT_SEGMENTS < 2 || length < DEFAULT_THRESHOLD || !"bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges")))
+            return 1;
+        if(getValidator(connection) == null)
+            return 1;
+        return (int) Math.max(1L, Math.min(DEFAULT_SEGMENTS, length / MIN_SEGMENT_SIZE));
+    }
+
+    public static String getValidator(final HttpURLConnection connection) {
+        final String etag = connection.getHeaderField("ETag");
+        if(etag != null && !etag.startsWith("W/"))
+            return etag;
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    private final Downloadable downloadable;
+    private final HttpURLConnection connection;
+    private final File file;
+    private final long length;
+    private final int segments;
+    private final String validator;
+    private final File progressFile;
+    private final AtomicLongArray positions;
+    private final Gson gson = new GsonBuilder().create();
+    private final AtomicInteger nextSegment = new AtomicInteger(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final CountDownLatch completed;
+    private FileChannel channel;
+
+    public SegmentedDownload(final Downloadable downloadable, final HttpURLConnection connection, final File file, final long length, final int segments) {
+        this.downloadable = downloadable;
+        this.connection = connection;
+        this.file = file;
+        this.length = length;
+        this.segments = segments;
+        validator = getValidator(connection);
+        progressFile = getProgressFile(file);
+        positions = new AtomicLongArray(segments);
+        completed = new CountDownLatch(segments);
+
+        for(int i = 0; i < segments; i++)
+            positions.set(i, getSegmentStart(i));
+        restoreProgress();
+    }
+
+    private void copyRange(final InputStream inputStream, final int segment, long position, final long end) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+
+        while(position < end) {
+            final int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+            if(read < 0)
+                throw new IOException("Connection closed at byte " + position + " of segment ending at " + end);
+
+            wrapped.limit(read);
+            wrapped.position(0);
+            while(wrapped.hasRemaining())
+                position += channel.write(wrapped, position);
+            positions.set(segment, position);
+        }
+    }
+
+    public void download(final Executor executor) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+            channel = randomAccessFile.getChannel();
+
+            for(int i = 1; i < segments && executor != null; i++)
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            fetchRemainingSegments();
+                        }
+                    });
+                }
+                catch(final RejectedExecutionException ignored) {
+                    break;
+                }
+
+            runSegment(0);
+            fetchRemainingSegments();
+
+            try {
+                completed.await();
+            }
+            catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            }
+
+            final Throwable cause = failure.get();
+            if(cause == null) {
+                progressFile.delete();
+                return;
+            }
+
+            saveProgress();
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException("Segmented download of " + downloadable.getUrl() + " failed", cause);
+        }
+        finally {
+            Downloadable.closeSilently(randomAccessFile);
+        }
+    }
+
+    private void fetchRemainingSegments() {
+        int segment;
+        while((segment = nextSegment.getAndIncrement()) < segments)
+            runSegment(segment);
+    }
+
+    private void fetchSegment(final int segment) throws IOException {
+        final long start = positions.get(segment);
+        final long end = getSegmentStart(segment + 1);
+
+        if(segment == 0 && start == 0L) {
+            InputStream inputStream = null;
+            try {
+                inputStream = new MonitoringInputStream(connection.getInputStream(), downloadable);
+                copyRange(inputStream, segment, start, end);
+            }
+            finally {
+                Downloadable.closeSilently(inputStream);
+                downloadable.abortConnection(connection);
+            }
+            return;
+        }
+        if(segment == 0)
+            downloadable.abortConnection(connection);
+        if(start >= end)
+            return;
+
+        final HttpURLConnection rangeConnection = downloadable.makeRangeConnection(start, end - 1L, validator);
+        InputStream inputStream = null;
+        try {
+            if(rangeConnection.getResponseCode() != 206 || Downloadable.getRangeStart(rangeConnection) != start)
+                throw new IOException("Server ignored range " + start + "-" + (end - 1L) + " (responded with " + rangeConnection.getResponseCode() + ")");
+
+            inputStream = new MonitoringInputStream(rangeConnection.getInputStream(), downloadable);
+            copyRange(inputStream, segment, start, end);
+        }
+        finally {
+            Downloadable.closeSilently(inputStream);
+            downloadable.releaseConnection(rangeConnection);
+        }
+    }
+
+    public long getCompleted() {
+        long completedBytes = 0L;
+        for(int i = 0; i < segments; i++)
+            completedBytes += positions.get(i) - getSegmentStart(i);
+        return completedBytes;
+    }
+
+    private long getSegmentStart(final int segment) {
+        return length * segment / segments;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    private void restoreProgress() {
+        if(validator == null || !progressFile.isFile())
+            return;
+
+        try {
+            final Progress progress = gson.fromJson(FileUtils.readFileToString(progressFile), Progress.class);
+            if(progress == null || !validator.equals(progress.validator) || progress.length != length || file.length() != length)
+                return;
+            if(progress.offsets == null || progress.offsets.length != segments)
+                return;
+            for(int i = 0; i < segments; i++)
+                if(progress.offsets[i] < getSegmentStart(i) || progress.offsets[i] > getSegmentStart(i + 1))
+                    return;
+
+            for(int i = 0; i < segments; i++)
+                positions.set(i, progress.offsets[i]);
+        }
+        catch(final IOException e) {
+            Launcher.getInstance().println("Couldn't read segment progress " + progressFile, e);
+        }
+        catch(final JsonParseException e) {
+            Launcher.getInstance().println("Ignoring corrupt segment progress " + progressFile, e);
+        }
+    }
+
+    private void runSegment(final int segment) {
+        try {
+            if(failure.get() == null)
+                fetchSegment(segment);
+        }
+        catch(final Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+        finally {
+            completed.countDown();
+        }
+    }
+
+    private void saveProgress() {
+        if(validator == null || getCompleted() == 0L) {
+            progressFile.delete();
+            return;
+        }
+
+        final Progress progress = new Progress();
+        progress.validator = validator;
+        progress.length = length;
+        progress.offsets = new long[segments];
+        for(int i = 0; i < segments; i++)
+            progress.offsets[i] = positions.get(i);
+        try {
+            channel.force(false);
+        }
+        catch(final IOException ignored) {
+        }
+        try {
+            AtomicFiles.writeString(progressFile, gson.toJson(progress));
+        }
+        catch(final IOException e) {
+            Launcher.getInstance().println("Couldn't save segment progress " + progressFile, e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package net.minecraft.launcher.updater.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.launcher.AtomicFiles;
+import net.minecraft.launcher.Launcher;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+public class VerifiedFileIndex {
+    private static class Entry {
+        private long size;
+        private long lastModified;
+        private String md5;
+        private String sha1;
+        private long verified;
+
+        public Entry() {
+        }
+
+        public Entry(final long size, final long lastModified, final String md5, final String sha1, final long verified) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+            this.sha1 = sha1;
+            this.verified = verified;
+        }
+
+        public boolean matches(final File file) {
+            return md5 != null && size == file.length() && lastModified == file.lastModified();
+        }
+    }
+
+    private static class RawIndex {
+        private Map<String, Entry> files = new HashMap<String, Entry>();
+    }
+
+    private final File indexFile;
+    private final long revalidateMillis;
+    private final Gson gson = new GsonBuilder().create();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    public VerifiedFileIndex(final File indexFile, final long revalidateMillis) {
+        this.indexFile = indexFile;
+        this.revalidateMillis = revalidateMillis;
+    }
+
+    public boolean contains(final File file) {
+        ensureLoaded();
+
+        return entries.containsKey(file.getAbsolutePath());
+    }
+
+    private void ensureLoaded() {
+        if(loaded)
+            return;
+
+        synchronized(this) {
+            if(loaded)
+                return;
+            loaded = true;
+
+            if(!indexFile.isFile())
+                return;
+            try {
+                final RawIndex raw = gson.fromJson(FileUtils.readFileToString(indexFile), RawIndex.class);
+                if(raw != null && raw.files != null)
+                    for(final Map.Entry<String, Entry> entry : raw.files.entrySet())
+                        if(entry.getKey() != null && entry.getValue() != null)
+                            entries.put(entry.getKey(), entry.getValue());
+            }
+            catch(final IOException e) {
+                Launcher.getInstance().println("Couldn't load verified file index " + indexFile, e);
+            }
+            catch(final JsonParseException e) {
+                Launcher.getInstance().println("Ignoring corrupt verified file index " + indexFile, e);
+            }
+        }
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    public String getMD5(final File file) {
+        ensureLoaded();
+
+        final Entry entry = entries.get(file.getAbsolutePath());
+        if(entry != null && entry.matches(file))
+            return entry.md5;
+
+        return Downloadable.getMD5(file);
+    }
+
+    public void invalidate(final File file) {
+        ensureLoaded();
+
+        if(entries.remove(file.getAbsolutePath()) != null)
+            dirty = true;
+    }
+
+    public boolean isTrusted(final File file, final String sha1, final long maxAgeMillis) {
+        ensureLoaded();
+
+        final Entry entry = entries.get(file.getAbsolutePath());
+        if(entry == null || !entry.matches(file) || System.currentTimeMillis() - entry.verified > maxAgeMillis)
+            return false;
+        return sha1 == null || sha1.equalsIgnoreCase(entry.sha1);
+    }
+
+    public void record(final File file, final String md5) {
+        record(file, md5, null);
+    }
+
+    public void record(final File file, final String md5, final String sha1) {
+        ensureLoaded();
+
+        if(md5 == null || !file.isFile())
+            return;
+
+        String knownSha1 = sha1;
+        final Entry existing = entries.get(file.getAbsolutePath());
+        final long now = System.currentTimeMillis();
+        if(existing != null && existing.matches(file) && md5.equalsIgnoreCase(existing.md5)) {
+            if((sha1 == null || sha1.equalsIgnoreCase(existing.sha1)) && now - existing.verified < revalidateMillis)
+                return;
+            if(knownSha1 == null)
+                knownSha1 = existing.sha1;
+        }
+
+        entries.put(file.getAbsolutePath(), new Entry(file.length(), file.lastModified(), md5.toLowerCase(), knownSha1 == null ? null : knownSha1.toLowerCase(), now));
+        dirty = true;
+    }
+
+    public synchronized void save() throws IOException {
+        if(!dirty)
+            return;
+        dirty = false;
+
+        final RawIndex raw = new RawIndex();
+        raw.files.putAll(entries);
+
+        AtomicFiles.writeString(indexFile, gson.toJson(raw));
+    }
+}
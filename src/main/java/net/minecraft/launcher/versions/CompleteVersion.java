@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Set;
 
 import net.minecraft.launcher.OperatingSystem;
+import net.minecraft.launcher.updater.download.DigestSet;
 import net.minecraft.launcher.updater.download.Downloadable;
 
 public class CompleteVersion implements Version {
@@ -146,11 +147,12 @@ public class CompleteVersion implements Version {
 
         for(final Library library : getRelevantLibraries()) {
             String file = null;
+            String classifier = null;
 
             if(library.getNatives() != null) {
-                final String natives = library.getNatives().get(os);
-                if(natives != null)
-                    file = library.getArtifactPath(natives);
+                classifier = library.getNatives().get(os);
+                if(classifier != null)
+                    file = library.getArtifactPath(classifier);
             }
             else
                 file = library.getArtifactPath();
@@ -159,8 +161,17 @@ public class CompleteVersion implements Version {
                 final URL url = new URL(library.getDownloadUrl() + file);
                 final File local = new File(targetDirectory, "libraries/" + file);
 
-                if(!local.isFile() || !library.hasCustomUrl())
-                    neededFiles.add(new Downloadable(proxy, url, local, ignoreLocalFiles));
+                if(!local.isFile() || !library.hasCustomUrl()) {
+                    final Downloadable downloadable = new Downloadable(proxy, url, local, ignoreLocalFiles);
+                    final LibraryDownloads.Artifact artifact = library.getDownloadArtifact(classifier);
+                    if(artifact != null) {
+                        downloadable.getExpectedDigests().add(DigestSet.SHA1, artifact.getSha1()).add(DigestSet.SHA256, artifact.getSha256());
+                        downloadable.setExpectedSize(artifact.getSize());
+                    }
+                    if(!library.hasCustomUrl() && !downloadable.getExpectedDigests().has(DigestSet.SHA1))
+                        downloadable.setSha1Sidecar(true);
+                    neededFiles.add(downloadable);
+                }
             }
         }
 
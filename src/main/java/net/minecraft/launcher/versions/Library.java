@@ -18,6 +18,7 @@ public class Library {
     private Map<OperatingSystem, String> natives;
     private ExtractRules extract;
     private String url;
+    private LibraryDownloads downloads;
 
     public Library() {
     }
@@ -86,6 +87,12 @@ public class Library {
         return LauncherConstants.LIBRARY_DOWNLOAD_BASE;
     }
 
+    public LibraryDownloads.Artifact getDownloadArtifact(final String classifier) {
+        if(downloads == null)
+            return null;
+        return downloads.getArtifact(classifier);
+    }
+
     public ExtractRules getExtractRules() {
         return extract;
     }
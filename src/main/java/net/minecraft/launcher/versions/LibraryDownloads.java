@@ -0,0 +1,37 @@
+package net.minecraft.launcher.versions;
+
+import java.util.Map;
+
+public class LibraryDownloads {
+    public static class Artifact {
+        private String sha1;
+        private String sha256;
+        private long size;
+
+        public Artifact() {
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    private Artifact artifact;
+    private Map<String, Artifact> classifiers;
+
+    public Artifact getArtifact(final String classifier) {
+        if(classifier == null)
+            return artifact;
+        if(classifiers == null)
+            return null;
+        return classifiers.get(classifier);
+    }
+}
@@ -0,0 +1,113 @@
+package net.minecraft.launcher.updater.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DownloadableDigestTest {
+    private static final List<String> ALGORITHMS = Arrays.asList(DigestSet.MD5, DigestSet.SHA1);
+    private static final int BENCHMARK_ROUNDS = Integer.getInteger("minecraft.test.digestRounds", 5).intValue();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static Map<String, String> streamDigests(final InputStream inputStream) throws IOException, NoSuchAlgorithmException {
+        final Map<String, MessageDigest> digests = new LinkedHashMap<String, MessageDigest>();
+        InputStream stream = inputStream;
+        for(final String algorithm : ALGORITHMS) {
+            final MessageDigest digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+            stream = new DigestInputStream(stream, digest);
+        }
+
+        final byte[] buffer = new byte[65536];
+        try {
+            while(stream.read(buffer) >= 0) {
+            }
+        }
+        finally {
+            Downloadable.closeSilently(stream);
+        }
+
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for(final Map.Entry<String, MessageDigest> entry : digests.entrySet())
+            result.put(entry.getKey(), MultiDigest.toHex(entry.getValue()));
+        return result;
+    }
+
+    private File write(final String name, final byte[] content) throws IOException {
+        final File file = folder.newFile(name);
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    @Test
+    public void channelCopyMatchesStreamCopy() throws IOException, NoSuchAlgorithmException {
+        final byte[] content = randomBytes(3 * 1048576 + 17);
+        final File target = folder.newFile("copy.bin");
+
+        final MultiDigest digest = new MultiDigest(ALGORITHMS);
+        Downloadable.copyAndDigest(new ByteArrayInputStream(content), new FileOutputStream(target).getChannel(), digest);
+
+        final Map<String, String> digests = digest.digest();
+        assertEquals(streamDigests(new ByteArrayInputStream(content)), digests);
+        assertEquals(Downloadable.copyAndDigest(new ByteArrayInputStream(content), new FileOutputStream(folder.newFile("stream.bin"))), digests.get(DigestSet.MD5));
+        assertArrayEquals(content, FileUtils.readFileToByteArray(target));
+    }
+
+    @Test
+    public void fileDigestsMatchStreamDigests() throws IOException, NoSuchAlgorithmException {
+        for(final int length : new int[] { 0, 1, 65535, 65537, 1048575, 1048576, 5 * 1048576 + 3 }) {
+            final File file = write("digest-" + length + ".bin", randomBytes(length));
+            final Map<String, String> expected = streamDigests(new FileInputStream(file));
+
+            assertEquals("length " + length, expected, Downloadable.getDigests(file, ALGORITHMS));
+            assertEquals("length " + length, expected.get(DigestSet.MD5), Downloadable.getMD5(file));
+        }
+    }
+
+    @Test
+    public void fileDigestsAgainstStreamBenchmark() throws IOException, NoSuchAlgorithmException {
+        final File file = write("benchmark.bin", randomBytes(32 * 1048576));
+        final Map<String, String> expected = streamDigests(new FileInputStream(file));
+
+        long streamNanos = Long.MAX_VALUE;
+        long channelNanos = Long.MAX_VALUE;
+        for(int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            long start = System.nanoTime();
+            streamDigests(new FileInputStream(file));
+            streamNanos = Math.min(streamNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            assertEquals(expected, Downloadable.getDigests(file, ALGORITHMS));
+            channelNanos = Math.min(channelNanos, System.nanoTime() - start);
+        }
+
+        System.out.println("Digesting " + file.length() + " bytes: DigestInputStream " + streamNanos / 1000000L + " ms, FileChannel " + channelNanos / 1000000L + " ms (best of " + BENCHMARK_ROUNDS + ")");
+    }
+}
@@ -0,0 +1,183 @@
+package net.minecraft.launcher.updater.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class MirrorSetTest {
+    private static class StandIn implements HttpHandler {
+        private final HttpServer server;
+        private final AtomicInteger probes = new AtomicInteger();
+        private volatile long delayMillis;
+        private volatile int status = 200;
+
+        public StandIn() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this);
+            server.start();
+        }
+
+        public String getBaseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        }
+
+        public void handle(final HttpExchange exchange) throws IOException {
+            if("HEAD".equals(exchange.getRequestMethod()))
+                probes.incrementAndGet();
+            try {
+                if(delayMillis > 0L)
+                    Thread.sleep(delayMillis);
+            }
+            catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            final byte[] body = "ok".getBytes("UTF-8");
+            if("HEAD".equals(exchange.getRequestMethod()))
+                exchange.sendResponseHeaders(status, -1L);
+            else {
+                exchange.sendResponseHeaders(status, body.length);
+                final OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(body);
+                outputStream.close();
+            }
+            exchange.close();
+        }
+
+        public void stop() {
+            server.stop(0);
+        }
+    }
+
+    private static final String FILE = "versions/1.6.4/1.6.4.jar";
+
+    private final List<StandIn> standIns = new ArrayList<StandIn>();
+    private final DownloadTransport transport = new DownloadTransport(8);
+
+    private URL file(final String baseUrl) throws IOException {
+        return new URL(baseUrl + FILE);
+    }
+
+    private StandIn start(final long delayMillis, final int status) throws IOException {
+        final StandIn standIn = new StandIn();
+        standIn.delayMillis = delayMillis;
+        standIn.status = status;
+        standIns.add(standIn);
+        return standIn;
+    }
+
+    @After
+    public void stopStandIns() {
+        for(final StandIn standIn : standIns)
+            standIn.stop();
+    }
+
+    @Test
+    public void probeRanksMirrorsByLatency() throws IOException {
+        final StandIn slow = start(400L, 200);
+        final StandIn fast = start(0L, 200);
+        final StandIn upstream = start(200L, 200);
+        final MirrorSet mirrors = new MirrorSet(upstream.getBaseUrl(), Arrays.asList(slow.getBaseUrl(), fast.getBaseUrl()));
+
+        assertEquals(file(slow.getBaseUrl()), mirrors.select(file(upstream.getBaseUrl())));
+
+        mirrors.probe(Proxy.NO_PROXY, transport);
+
+        assertEquals(1, slow.probes.get());
+        assertEquals(1, fast.probes.get());
+        assertEquals(1, upstream.probes.get());
+        assertTrue(mirrors.getLastProbe() > 0L);
+        assertEquals(file(fast.getBaseUrl()), mirrors.select(file(upstream.getBaseUrl())));
+    }
+
+    @Test
+    public void probeSkipsMirrorsAnsweringWithServerErrors() throws IOException {
+        final StandIn broken = start(0L, 503);
+        final StandIn healthy = start(100L, 200);
+        final StandIn upstream = start(400L, 200);
+        final MirrorSet mirrors = new MirrorSet(upstream.getBaseUrl(), Arrays.asList(broken.getBaseUrl(), healthy.getBaseUrl()));
+
+        mirrors.probe(Proxy.NO_PROXY, transport);
+
+        assertEquals(file(healthy.getBaseUrl()), mirrors.select(file(upstream.getBaseUrl())));
+        assertTrue(mirrors.toString().contains(broken.getBaseUrl() + " (down)"));
+    }
+
+    @Test
+    public void failedDownloadFailsOverToNextMirror() throws IOException {
+        final StandIn first = start(0L, 200);
+        final StandIn second = start(0L, 200);
+        final StandIn upstream = start(0L, 200);
+        final MirrorSet mirrors = new MirrorSet(upstream.getBaseUrl(), Arrays.asList(first.getBaseUrl(), second.getBaseUrl()));
+        final URL original = file(upstream.getBaseUrl());
+
+        final URL chosen = mirrors.select(original);
+        assertEquals(file(first.getBaseUrl()), chosen);
+
+        mirrors.onFailure(chosen);
+        assertEquals(file(second.getBaseUrl()), mirrors.select(original));
+
+        mirrors.onFailure(file(second.getBaseUrl()));
+        assertEquals(original, mirrors.select(original));
+    }
+
+    @Test
+    public void cooldownPrefersMirrorThatRecoversSoonest() throws IOException {
+        final StandIn first = start(0L, 200);
+        final StandIn second = start(0L, 200);
+        final StandIn upstream = start(0L, 200);
+        final MirrorSet mirrors = new MirrorSet(upstream.getBaseUrl(), Arrays.asList(first.getBaseUrl(), second.getBaseUrl()));
+        final URL original = file(upstream.getBaseUrl());
+
+        for(int i = 0; i < 3; i++)
+            mirrors.onFailure(file(first.getBaseUrl()));
+        for(int i = 0; i < 2; i++)
+            mirrors.onFailure(original);
+        mirrors.onFailure(file(second.getBaseUrl()));
+
+        assertEquals(file(second.getBaseUrl()), mirrors.select(original));
+
+        mirrors.onSuccess(file(first.getBaseUrl()), 0L, 1000000L);
+        assertEquals(file(first.getBaseUrl()), mirrors.select(original));
+    }
+
+    @Test
+    public void successfulProbeEndsCooldown() throws IOException {
+        final StandIn mirror = start(0L, 200);
+        final StandIn upstream = start(300L, 200);
+        final MirrorSet mirrors = new MirrorSet(upstream.getBaseUrl(), Arrays.asList(mirror.getBaseUrl()));
+        final URL original = file(upstream.getBaseUrl());
+
+        mirrors.onFailure(file(mirror.getBaseUrl()));
+        assertEquals(original, mirrors.select(original));
+
+        mirrors.probe(Proxy.NO_PROXY, transport);
+        assertEquals(file(mirror.getBaseUrl()), mirrors.select(original));
+    }
+
+    @Test
+    public void urlsOutsideUpstreamAreLeftAlone() throws IOException {
+        final StandIn mirror = start(0L, 200);
+        final StandIn upstream = start(0L, 200);
+        final StandIn other = start(0L, 200);
+        final MirrorSet mirrors = new MirrorSet(upstream.getBaseUrl(), Arrays.asList(mirror.getBaseUrl()));
+
+        assertEquals(file(other.getBaseUrl()), mirrors.select(file(other.getBaseUrl())));
+    }
+}
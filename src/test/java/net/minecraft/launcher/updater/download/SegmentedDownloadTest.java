@@ -0,0 +1,179 @@
+package net.minecraft.launcher.updater.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class SegmentedDownloadTest {
+    private class RangeServer implements HttpHandler {
+        private final HttpServer server;
+        private volatile String etag;
+        private volatile long failAt = -1L;
+        private volatile int failAfter;
+
+        public RangeServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        public URL getUrl() throws IOException {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/big.jar");
+        }
+
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                final String range = exchange.getRequestHeaders().getFirst("Range");
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().set("ETag", etag);
+
+                long start = 0L;
+                long end = content.length - 1L;
+                if(range != null) {
+                    final String[] bounds = range.substring("bytes=".length()).split("-");
+                    start = Long.parseLong(bounds[0]);
+                    end = Long.parseLong(bounds[1]);
+                    rangeStarts.add(start);
+                    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+                    exchange.sendResponseHeaders(206, end - start + 1L);
+                }
+                else
+                    exchange.sendResponseHeaders(200, content.length);
+
+                final OutputStream outputStream = exchange.getResponseBody();
+                if(start == failAt) {
+                    failAt = -1L;
+                    outputStream.write(content, (int) start, failAfter);
+                    outputStream.flush();
+                    return;
+                }
+                outputStream.write(content, (int) start, (int) (end - start + 1L));
+                outputStream.close();
+            }
+            catch(final IOException ignored) {
+            }
+            finally {
+                exchange.close();
+            }
+        }
+
+        public void stop() {
+            server.stop(0);
+        }
+    }
+
+    private static final int LENGTH = 20 * 1048576;
+    private static final int SEGMENTS = 4;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[LENGTH];
+    private final List<Long> rangeStarts = new CopyOnWriteArrayList<Long>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private RangeServer server;
+    private File target;
+
+    private Downloadable newDownloadable() throws IOException {
+        final Downloadable downloadable = new Downloadable(Proxy.NO_PROXY, server.getUrl(), target, false);
+        downloadable.setSegmentExecutor(executor);
+        return downloadable;
+    }
+
+    private long segmentStart(final int segment) {
+        return (long) LENGTH * segment / SEGMENTS;
+    }
+
+    @Before
+    public void startServer() throws IOException, NoSuchAlgorithmException {
+        new Random(LENGTH).nextBytes(content);
+        server = new RangeServer();
+        server.etag = "\"" + String.format("%1$032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(content))) + "\"";
+        target = new File(folder.getRoot(), "big.jar");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void failedSegmentKeepsPartialAndResumes() throws IOException {
+        final int kept = 3 * 65536;
+        server.failAt = segmentStart(2);
+        server.failAfter = kept;
+
+        final Downloadable first = newDownloadable();
+        try {
+            first.download();
+            fail("Download should have failed mid segment");
+        }
+        catch(final IOException expected) {
+        }
+        assertTrue(first.getPartialFile().isFile());
+        assertTrue(SegmentedDownload.getProgressFile(first.getPartialFile()).isFile());
+
+        rangeStarts.clear();
+        final String result = newDownloadable().download();
+
+        assertTrue(result, result.startsWith("Resumed " + SEGMENTS + " segments"));
+        assertTrue(rangeStarts.contains(segmentStart(2) + kept));
+        assertFalse(rangeStarts.contains(segmentStart(2)));
+        assertArrayEquals(content, FileUtils.readFileToByteArray(target));
+        assertFalse(first.getPartialFile().exists());
+        assertFalse(SegmentedDownload.getProgressFile(first.getPartialFile()).exists());
+    }
+
+    @Test
+    public void changedValidatorRestartsSegments() throws IOException {
+        server.failAt = segmentStart(2);
+        server.failAfter = 65536;
+
+        try {
+            newDownloadable().download();
+            fail("Download should have failed mid segment");
+        }
+        catch(final IOException expected) {
+        }
+
+        final File progressFile = SegmentedDownload.getProgressFile(new File(target.getPath() + ".part"));
+        FileUtils.writeStringToFile(progressFile, FileUtils.readFileToString(progressFile).replace(server.etag.substring(1, 9), "00000000"));
+        rangeStarts.clear();
+        final String result = newDownloadable().download();
+
+        assertEquals("Downloaded in " + SEGMENTS + " segments and etag matched", result);
+        for(int i = 1; i < SEGMENTS; i++)
+            assertTrue(rangeStarts.contains(segmentStart(i)));
+        assertArrayEquals(content, FileUtils.readFileToByteArray(target));
+    }
+}